@@ -0,0 +1,109 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.store.BinaryProfileCodec;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.JavaSerializationProfileCodec;
+import org.pac4j.play.store.PlayCacheStore;
+
+/**
+ * This benchmark measures the profile storage: {@link StorageHelper#getProfile(String)},
+ * {@link StorageHelper#saveProfile(String, CommonProfile)} and the cache key construction, against an in-memory store.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageHelperBenchmark {
+
+    @Param({ "binary", "serialization", "none" })
+    public String codec;
+
+    @Param({ "", "myapp" })
+    public String cacheKeyPrefix;
+
+    private String sessionId;
+
+    private CommonProfile profile;
+
+    @Setup
+    public void setUp() {
+        Config.setStore(new InMemoryStore());
+        if ("binary".equals(codec)) {
+            Config.setProfileCodec(new BinaryProfileCodec());
+        } else if ("serialization".equals(codec)) {
+            Config.setProfileCodec(new JavaSerializationProfileCodec());
+        } else {
+            Config.setProfileCodec(null);
+        }
+        Config.setCacheKeyPrefix(cacheKeyPrefix);
+        profile = new CommonProfile();
+        profile.setId("jleleu");
+        profile.addAttribute("email", "jleleu@example.com");
+        profile.addAttribute("display_name", "Jerome Leleu");
+        profile.addRole("ROLE_USER");
+        sessionId = StorageHelper.generateSessionId();
+        StorageHelper.saveProfile(sessionId, profile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Config.setStore(new PlayCacheStore());
+        Config.setProfileCodec(new BinaryProfileCodec());
+        Config.setCacheKeyPrefix("");
+    }
+
+    @Benchmark
+    public CommonProfile getProfile() {
+        return StorageHelper.getProfile(sessionId);
+    }
+
+    @Benchmark
+    public void saveProfile() {
+        StorageHelper.saveProfile(sessionId, profile);
+    }
+
+    @Benchmark
+    public String getCacheKey() {
+        return StorageHelper.getCacheKey(sessionId + Constants.SEPARATOR + Constants.PROFILE);
+    }
+
+    @Benchmark
+    public String generateSessionId() {
+        return StorageHelper.generateSessionId();
+    }
+}
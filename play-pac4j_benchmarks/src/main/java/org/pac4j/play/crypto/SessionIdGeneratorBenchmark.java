@@ -0,0 +1,73 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This benchmark compares the {@link SecureRandomSessionIdGenerator} (a random generator per thread) with the
+ * {@link UuidSessionIdGenerator} (a random generator shared by all threads) when many sessions are created concurrently.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionIdGeneratorBenchmark {
+
+    @Param({ "secureRandom", "uuid" })
+    public String generator;
+
+    private SessionIdGenerator sessionIdGenerator;
+
+    @Setup
+    public void setUp() {
+        if ("uuid".equals(generator)) {
+            sessionIdGenerator = new UuidSessionIdGenerator();
+        } else {
+            sessionIdGenerator = new SecureRandomSessionIdGenerator();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String generateSingleThread() {
+        return sessionIdGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String generate32Threads() {
+        return sessionIdGenerator.generate();
+    }
+}
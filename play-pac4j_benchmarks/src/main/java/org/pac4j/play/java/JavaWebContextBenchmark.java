@@ -0,0 +1,76 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.java;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import play.core.j.JavaHelpers$;
+import play.mvc.Http.Context;
+import play.test.FakeRequest;
+
+/**
+ * This benchmark measures the request reads of the {@link JavaWebContext} done by the clients during the callback.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaWebContextBenchmark {
+
+    private Context context;
+
+    @Setup
+    public void setUp() {
+        final FakeRequest request = new FakeRequest("GET", "/callback?client_name=CasClient&ticket=ST-1-abcdef&page=1")
+            .withHeader("Host", "localhost:9000");
+        context = JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest());
+    }
+
+    @Benchmark
+    public String getRequestParameter() {
+        final JavaWebContext webContext = new JavaWebContext(context.request(), context.response(), context.session());
+        return webContext.getRequestParameter("ticket");
+    }
+
+    @Benchmark
+    public Map<String, String[]> getRequestParameters() {
+        final JavaWebContext webContext = new JavaWebContext(context.request(), context.response(), context.session());
+        return webContext.getRequestParameters();
+    }
+
+    @Benchmark
+    public int getServerPort() {
+        final JavaWebContext webContext = new JavaWebContext(context.request(), context.response(), context.session());
+        return webContext.getServerPort();
+    }
+}
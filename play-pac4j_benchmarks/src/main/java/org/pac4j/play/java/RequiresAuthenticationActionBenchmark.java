@@ -0,0 +1,120 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.cas.client.CasClient;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.Config;
+import org.pac4j.play.Constants;
+import org.pac4j.play.StorageHelper;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.PlayCacheStore;
+
+import play.core.j.JavaHelpers$;
+import play.libs.F.Promise;
+import play.mvc.Action;
+import play.mvc.Http.Context;
+import play.mvc.Result;
+import play.mvc.Results;
+import play.test.FakeRequest;
+
+/**
+ * This benchmark measures the {@link RequiresAuthenticationAction}: an authenticated user accessing the protected action and an
+ * anonymous user redirected to the identity provider. Each call uses a new context, whose creation is measured by
+ * {@link #newContext()}.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequiresAuthenticationActionBenchmark {
+
+    @RequiresAuthentication(clientName = "CasClient")
+    private static class Protected {
+    }
+
+    private RequiresAuthenticationAction action;
+
+    private String sessionId;
+
+    @Setup
+    public void setUp() {
+        final CasClient casClient = new CasClient();
+        casClient.setCasLoginUrl("http://localhost:8080/cas/login");
+        Config.setClients(new Clients("http://localhost:9000/callback", casClient));
+        Config.setStore(new InMemoryStore());
+        action = new RequiresAuthenticationAction();
+        action.configuration = Protected.class.getAnnotation(RequiresAuthentication.class);
+        action.delegate = new Action.Simple() {
+            @Override
+            public Promise<Result> call(final Context context) {
+                return Promise.pure((Result) Results.ok());
+            }
+        };
+        final CommonProfile profile = new CommonProfile();
+        profile.setId("jleleu");
+        sessionId = StorageHelper.generateSessionId();
+        StorageHelper.saveProfile(sessionId, profile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Config.setClients(null);
+        Config.setStore(new PlayCacheStore());
+    }
+
+    private static Context newContext(final String sessionId) {
+        FakeRequest request = new FakeRequest("GET", "/protected?page=1");
+        if (sessionId != null) {
+            request = request.withSession(Constants.SESSION_ID, sessionId);
+        }
+        return JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest());
+    }
+
+    @Benchmark
+    public Context newContext() {
+        return newContext(sessionId);
+    }
+
+    @Benchmark
+    public Result authenticated() throws Throwable {
+        return action.call(newContext(sessionId)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Result unauthenticated() throws Throwable {
+        return action.call(newContext(null)).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.scala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.cas.client.CasClient;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.Config;
+import org.pac4j.play.StorageHelper;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.PlayCacheStore;
+
+import play.api.mvc.AnyContent;
+import play.api.mvc.Request;
+import play.api.mvc.Result;
+
+/**
+ * This benchmark measures the <code>RequiresAuthentication</code> action of the {@link ScalaController}: an authenticated user
+ * accessing the protected action and an anonymous user redirected to the identity provider.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalaControllerBenchmark {
+
+    private BenchmarkController controller;
+
+    private Request<AnyContent> authenticatedRequest;
+
+    private Request<AnyContent> anonymousRequest;
+
+    @Setup
+    public void setUp() {
+        final CasClient casClient = new CasClient();
+        casClient.setCasLoginUrl("http://localhost:8080/cas/login");
+        Config.setClients(new Clients("http://localhost:9000/callback", casClient));
+        Config.setStore(new InMemoryStore());
+        final CommonProfile profile = new CommonProfile();
+        profile.setId("jleleu");
+        final String sessionId = StorageHelper.generateSessionId();
+        StorageHelper.saveProfile(sessionId, profile);
+        controller = new BenchmarkController();
+        authenticatedRequest = controller.newRequest(sessionId);
+        anonymousRequest = controller.newRequest(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Config.setClients(null);
+        Config.setStore(new PlayCacheStore());
+    }
+
+    @Benchmark
+    public Result authenticated() {
+        return controller.call(authenticatedRequest);
+    }
+
+    @Benchmark
+    public Result unauthenticated() {
+        return controller.call(anonymousRequest);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.scala
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+import play.api.mvc._
+import play.api.test.FakeRequest
+import org.pac4j.play._
+
+/**
+ * This controller exposes a protected action to the [[ScalaControllerBenchmark]].
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+class BenchmarkController extends ScalaController {
+
+  val protectedAction = RequiresAuthentication("CasClient") { profile =>
+    Action {
+      Ok(profile.getId)
+    }
+  }
+
+  def newRequest(sessionId: String): Request[AnyContent] = {
+    val request = FakeRequest("GET", "/protected?page=1")
+    if (sessionId != null) request.withSession(Constants.SESSION_ID -> sessionId) else request
+  }
+
+  def call(request: Request[AnyContent]): Result = Await.result(protectedAction(request), 5.seconds)
+}
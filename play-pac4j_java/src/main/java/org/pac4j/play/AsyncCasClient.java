@@ -0,0 +1,172 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.jasig.cas.client.authentication.AttributePrincipal;
+import org.jasig.cas.client.validation.AbstractUrlBasedTicketValidator;
+import org.jasig.cas.client.validation.Assertion;
+import org.pac4j.cas.client.CasClient;
+import org.pac4j.cas.credentials.CasCredentials;
+import org.pac4j.cas.profile.CasProfile;
+import org.pac4j.cas.profile.CasProxyProfile;
+import org.pac4j.core.authorization.AuthorizationGenerator;
+import org.pac4j.core.client.BaseClient;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.exception.TechnicalException;
+
+import play.libs.F.Function;
+import play.libs.F.Promise;
+import play.libs.ws.WS;
+import play.libs.ws.WSResponse;
+
+/**
+ * This client is a {@link CasClient} validating the service tickets with Play WS: the callback does not block any thread while the CAS
+ * server validates the ticket (see {@link AsyncClient}).
+ * <p />
+ * The validation url and the parsing of the response are the ones of the ticket validator of the {@link CasClient}, so the CAS10, CAS20
+ * and CAS20_PROXY protocols behave as with the blocking client. The SAML protocol (which posts a SOAP request) is not supported.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class AsyncCasClient extends CasClient implements AsyncClient<CasCredentials, CasProfile> {
+
+    public final static int DEFAULT_VALIDATION_TIMEOUT = 5000;
+
+    private final static Method constructValidationUrl;
+
+    private final static Method parseResponseFromServer;
+
+    static {
+        try {
+            constructValidationUrl = AbstractUrlBasedTicketValidator.class.getDeclaredMethod("constructValidationUrl", String.class,
+                    String.class);
+            constructValidationUrl.setAccessible(true);
+            parseResponseFromServer = AbstractUrlBasedTicketValidator.class.getDeclaredMethod("parseResponseFromServer", String.class);
+            parseResponseFromServer.setAccessible(true);
+        } catch (final NoSuchMethodException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+
+    @Override
+    protected void internalInit() {
+        if (this.casProtocol == CasProtocol.SAML) {
+            throw new TechnicalException("Unsupported CAS protocol for asynchronous validation : " + this.casProtocol);
+        }
+        super.internalInit();
+    }
+
+    @Override
+    protected BaseClient<CasCredentials, CasProfile> newClient() {
+        final AsyncCasClient client = new AsyncCasClient();
+        client.setCasLoginUrl(this.casLoginUrl);
+        client.setCasPrefixUrl(this.casPrefixUrl);
+        client.setCasProtocol(this.casProtocol);
+        client.setRenew(this.renew);
+        client.setGateway(this.gateway);
+        client.setAcceptAnyProxy(this.acceptAnyProxy);
+        client.setAllowedProxyChains(this.allowedProxyChains);
+        client.setCasProxyReceptor(this.casProxyReceptor);
+        client.setValidationTimeout(this.validationTimeout);
+        return client;
+    }
+
+    public Promise<CasProfile> getUserProfileAsync(final CasCredentials credentials, final WebContext context) {
+        init();
+        final String url = invoke(constructValidationUrl, credentials.getServiceTicket(), getContextualCallbackUrl(context));
+        logger.debug("validation url : {}", url);
+        return fetch(url).map(new Function<String, CasProfile>() {
+            public CasProfile apply(final String response) {
+                return buildProfile(response);
+            }
+        });
+    }
+
+    /**
+     * Call the CAS server without blocking.
+     *
+     * @param url the validation url
+     * @return the promise of the response body
+     */
+    protected Promise<String> fetch(final String url) {
+        return WS.url(url).setTimeout(this.validationTimeout).get().map(new Function<WSResponse, String>() {
+            public String apply(final WSResponse response) {
+                if (response.getStatus() != 200) {
+                    throw new TechnicalException("Unexpected status from the CAS server : " + response.getStatus());
+                }
+                return response.getBody();
+            }
+        });
+    }
+
+    // same profile as the blocking client
+    private CasProfile buildProfile(final String response) {
+        final Assertion assertion = invoke(parseResponseFromServer, response);
+        final AttributePrincipal principal = assertion.getPrincipal();
+        logger.debug("principal : {}", principal);
+        final CasProfile casProfile;
+        if (this.casProxyReceptor != null) {
+            casProfile = new CasProxyProfile();
+        } else {
+            casProfile = new CasProfile();
+        }
+        casProfile.setId(principal.getName());
+        casProfile.addAttributes(principal.getAttributes());
+        if (this.casProxyReceptor != null) {
+            ((CasProxyProfile) casProfile).setPrincipal(principal);
+        }
+        final List<AuthorizationGenerator<CasProfile>> generators = getAuthorizationGenerators();
+        if (generators != null) {
+            for (final AuthorizationGenerator<CasProfile> generator : generators) {
+                generator.generate(casProfile);
+            }
+        }
+        logger.debug("casProfile : {}", casProfile);
+        return casProfile;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T invoke(final Method method, final Object... args) {
+        try {
+            return (T) method.invoke(this.ticketValidator, args);
+        } catch (final InvocationTargetException e) {
+            logger.error("cannot validate CAS ticket : {}", e.getCause().getMessage());
+            throw new TechnicalException(e.getCause());
+        } catch (final IllegalAccessException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    public int getValidationTimeout() {
+        return this.validationTimeout;
+    }
+
+    /**
+     * Define the timeout of the calls to the CAS server in milliseconds.
+     *
+     * @param validationTimeout
+     */
+    public void setValidationTimeout(final int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.credentials.Credentials;
+import org.pac4j.core.profile.CommonProfile;
+
+import play.libs.F.Promise;
+
+/**
+ * This interface can be implemented by a client (a subclass of a pac4j client) performing the token exchange and the retrieval of the
+ * user profile with a non-blocking HTTP client (like Play WS): the {@link CallbackController} then composes on the returned promise
+ * instead of blocking a thread of the {@link Config#getClientExecutionContext()} during the calls to the provider.
+ * <p />
+ * The credentials are still retrieved by the (blocking) <code>getCredentials</code> method of the client, which does not call the
+ * provider.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface AsyncClient<C extends Credentials, U extends CommonProfile> {
+
+    /**
+     * Get the user profile from the credentials without blocking (equivalent of the <code>getUserProfile</code> method of the
+     * client).
+     *
+     * @param credentials
+     * @param context
+     * @return the promise of the user profile (of <code>null</code> if the user cannot be authenticated)
+     */
+    Promise<U> getUserProfileAsync(C credentials, WebContext context);
+}
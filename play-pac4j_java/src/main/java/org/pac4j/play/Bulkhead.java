@@ -0,0 +1,304 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import scala.concurrent.ExecutionContext;
+
+/**
+ * This execution context isolates the calls to the identity providers (credentials, user profile and redirection computations) from
+ * the rest of the application: a bounded number of threads and a bounded queue, so that a slow provider cannot exhaust the Play thread
+ * pools. When it's saturated, the task is rejected (HTTP 503) or run by the calling thread according to the {@link RejectionPolicy}.
+ * <p />
+ * On a JVM supporting virtual threads, {@link #virtual(String, int, RejectionPolicy)} runs each task in a virtual thread, the
+ * concurrency being bounded by a number of permits.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class Bulkhead implements ExecutionContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(Bulkhead.class);
+
+    public final static int DEFAULT_MAX_THREADS = 64;
+
+    public final static int DEFAULT_QUEUE_SIZE = 256;
+
+    /**
+     * What to do with a task when the bulkhead is saturated.
+     */
+    public enum RejectionPolicy {
+        /** reject the task with a {@link RejectedExecutionException} */
+        ABORT,
+        /** run the task in the calling thread */
+        CALLER_RUNS
+    }
+
+    private final String name;
+
+    private final int maxConcurrency;
+
+    private final int queueSize;
+
+    private final RejectionPolicy rejectionPolicy;
+
+    // platform threads
+    private final ThreadPoolExecutor pool;
+
+    // virtual threads
+    private final ExecutorService virtualExecutor;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    // running and queued tasks
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong completedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public Bulkhead() {
+        this("pac4j", DEFAULT_MAX_THREADS, DEFAULT_QUEUE_SIZE, RejectionPolicy.ABORT);
+    }
+
+    public Bulkhead(final String name, final int maxThreads, final int queueSize, final RejectionPolicy rejectionPolicy) {
+        this(name, maxThreads, queueSize, rejectionPolicy, null);
+    }
+
+    private Bulkhead(final String name, final int maxConcurrency, final int queueSize, final RejectionPolicy rejectionPolicy,
+            final ExecutorService virtualExecutor) {
+        if (maxConcurrency <= 0 || queueSize < 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive and queueSize not negative");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.rejectionPolicy = rejectionPolicy;
+        this.virtualExecutor = virtualExecutor;
+        if (virtualExecutor != null) {
+            this.queueSize = 0;
+            this.permits = new Semaphore(maxConcurrency);
+            this.pool = null;
+        } else {
+            this.queueSize = queueSize;
+            this.permits = null;
+            final AtomicInteger counter = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                    queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Create a bulkhead running each task in a virtual thread (or in platform threads if the JVM does not support virtual threads).
+     *
+     * @param name
+     * @param maxConcurrency
+     * @param rejectionPolicy
+     * @return the bulkhead
+     */
+    public static Bulkhead virtual(final String name, final int maxConcurrency, final RejectionPolicy rejectionPolicy) {
+        final ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        if (virtualExecutor == null) {
+            logger.warn("Virtual threads are not supported by this JVM, platform threads are used for {}", name);
+            return new Bulkhead(name, maxConcurrency, DEFAULT_QUEUE_SIZE, rejectionPolicy);
+        }
+        return new Bulkhead(name, maxConcurrency, 0, rejectionPolicy, virtualExecutor);
+    }
+
+    /**
+     * Whether the JVM supports virtual threads.
+     *
+     * @return if virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadFactoryMethod() != null;
+    }
+
+    private static Method getVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        final Method method = getVirtualThreadFactoryMethod();
+        if (method == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (final Exception e) {
+            logger.warn("Cannot create virtual threads", e);
+            return null;
+        }
+    }
+
+    public void execute(final Runnable runnable) {
+        final Runnable task = new Runnable() {
+            public void run() {
+                activeCount.incrementAndGet();
+                try {
+                    runnable.run();
+                } finally {
+                    activeCount.decrementAndGet();
+                    pendingCount.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            }
+        };
+        if (this.virtualExecutor != null) {
+            this.pendingCount.incrementAndGet();
+            if (!this.permits.tryAcquire()) {
+                reject(task);
+                return;
+            }
+            try {
+                this.virtualExecutor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            task.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                this.permits.release();
+                reject(task);
+            }
+        } else {
+            try {
+                this.pendingCount.incrementAndGet();
+                this.pool.execute(task);
+            } catch (final RejectedExecutionException e) {
+                reject(task);
+            }
+        }
+    }
+
+    private void reject(final Runnable task) {
+        this.pendingCount.decrementAndGet();
+        this.rejectedCount.incrementAndGet();
+        if (this.rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+            this.pendingCount.incrementAndGet();
+            task.run();
+        } else {
+            throw new RejectedExecutionException("Bulkhead " + this.name + " is saturated");
+        }
+    }
+
+    public void reportFailure(final Throwable t) {
+        logger.error("Task failed in bulkhead " + this.name, t);
+    }
+
+    public ExecutionContext prepare() {
+        return this;
+    }
+
+    /**
+     * Stop the threads (the running tasks are completed).
+     */
+    public void shutdown() {
+        if (this.virtualExecutor != null) {
+            this.virtualExecutor.shutdown();
+        } else {
+            this.pool.shutdown();
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isVirtual() {
+        return this.virtualExecutor != null;
+    }
+
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * Return the number of running tasks.
+     *
+     * @return the active count
+     */
+    public int getActiveCount() {
+        return this.activeCount.get();
+    }
+
+    /**
+     * Return the number of tasks waiting for a thread.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return this.pool != null ? this.pool.getQueue().size() : 0;
+    }
+
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * Return the number of tasks which could not be queued (rejected or run by the caller).
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Return the saturation: running and queued tasks compared to the capacity (threads and queue), from 0 to 1.
+     *
+     * @return the saturation
+     */
+    public double getSaturation() {
+        return Math.min(1.0d, (double) this.pendingCount.get() / (this.maxConcurrency + this.queueSize));
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead[" + this.name + (isVirtual() ? " (virtual)" : "") + ", active: " + getActiveCount() + "/"
+                + this.maxConcurrency + ", queued: " + getQueueSize() + "/" + this.queueSize + ", rejected: " + getRejectedCount() + "]";
+    }
+}
@@ -16,22 +16,28 @@
 package org.pac4j.play;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pac4j.core.client.BaseClient;
-import org.pac4j.core.client.Clients;
 import org.pac4j.core.context.HttpConstants;
 import org.pac4j.core.credentials.Credentials;
 import org.pac4j.core.exception.RequiresHttpAction;
 import org.pac4j.core.exception.TechnicalException;
 import org.pac4j.core.profile.CommonProfile;
 import org.pac4j.play.java.JavaWebContext;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.store.ProfileAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import play.libs.F.Function;
 import play.libs.F.Function0;
 import play.libs.F.Promise;
+import play.libs.HttpExecution;
 import play.mvc.Controller;
+import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
 
@@ -55,63 +61,290 @@ public class CallbackController extends Controller {
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static Promise<Result> callback() {
-        // clients group from config
-        final Clients clientsGroup = Config.getClients();
+        // clients indexed by name
+        final ClientRegistry registry = Config.getClientRegistry();
+        if (registry == null) {
+            throw new TechnicalException("No client defined. Use Config.setClients(clients)");
+        }
 
         // web context
         final JavaWebContext context = new JavaWebContext(request(), response(), session());
 
-        // get the client from its type
-        final BaseClient client = (BaseClient) clientsGroup.findClient(context);
+        // get the client from its name
+        final BaseClient client = (BaseClient) registry.findClient(request());
         logger.debug("client : {}", client);
 
+        // callback latency by client
+        final long start = System.nanoTime();
+        final String metric = MetricsRegistry.CALLBACK + (client != null ? client.getName() : null);
+
+        // the provider is called without blocking any thread
+        if (client instanceof AsyncClient) {
+            // admission limits of the client
+            final ClientLimiter limiter = Config.getClientLimiter(client.getName());
+            if (limiter == null) {
+                return finishAuthenticationAsync(client, context, metric, start);
+            }
+            if (!limiter.tryAcquire()) {
+                return Promise.pure(rejected(client.getName(), limiter, response()));
+            }
+            return releaseOnCompletion(limiter, finishAuthenticationAsync(client, context, metric, start));
+        }
+
         // get credentials
-        Promise<Result> promise = Promise.promise(new Function0<Result>() {
+        return promiseForClient(client != null ? client.getName() : null, response(), new Function0<Result>() {
             public Result apply() {
-                Credentials credentials = null;
+                // session attributes read once and saved together
+                final StorageScope scope = StorageScope.open();
                 try {
-                    credentials = client.getCredentials(context);
-                    logger.debug("credentials : {}", credentials);
-
+                    return finishAuthentication(client, context);
                 } catch (final RequiresHttpAction e) {
-                    // requires some specific HTTP action
-                    final int code = context.getResponseStatus();
-                    logger.debug("requires HTTP action : {}", code);
-                    if (code == HttpConstants.UNAUTHORIZED) {
-                        return unauthorized(Config.getErrorPage401()).as(Constants.HTML_CONTENT_TYPE);
-                    } else if (code == HttpConstants.TEMP_REDIRECT) {
-                        return Results.status(HttpConstants.TEMP_REDIRECT);
-                    } else if (code == HttpConstants.OK) {
-                        final String content = context.getResponseContent();
-                        logger.debug("render : {}", content);
-                        return ok(content).as(Constants.HTML_CONTENT_TYPE);
-                    }
-                    final String message = "Unsupported HTTP action : " + code;
-                    logger.error(message);
-                    throw new TechnicalException(message);
+                    return requiresHttpAction(context);
+                } finally {
+                    scope.close();
+                    recordTime(metric, start);
                 }
+            }
+        });
+    }
 
-                // get user profile
-                final CommonProfile profile = client.getUserProfile(credentials, context);
-                logger.debug("profile : {}", profile);
+    private static void recordTime(final String metric, final long start) {
+        Config.getMetricsRegistry().recordTime(metric, System.nanoTime() - start);
+    }
 
-                // get or create sessionId
-                final String sessionId = StorageHelper.getOrCreationSessionId(session());
+    /**
+     * This method runs a computation calling an identity provider on the {@link Config#getClientExecutionContext()}, a 503 error is
+     * returned if it's saturated.
+     * 
+     * @param function
+     * @return the promise of the result
+     */
+    public static Promise<Result> promiseForClient(final Function0<Result> function) {
+        try {
+            return Promise.promise(function, HttpExecution.fromThread(Config.getClientExecutionContext()));
+        } catch (final RejectedExecutionException e) {
+            return Promise.pure(serviceUnavailable(e));
+        }
+    }
 
-                // save user profile only if it's not null
-                if (profile != null) {
-                    StorageHelper.saveProfile(sessionId, profile);
+    /**
+     * This method runs a computation calling the identity provider of a client on the {@link Config#getClientExecutionContext()}, within
+     * the admission limits of the client ({@link Config#getClientLimiter(String)}): a 503 error is returned with a
+     * <code>Retry-After</code> header if they are exceeded.
+     * 
+     * @param clientName
+     * @param response
+     * @param function
+     * @return the promise of the result
+     * @since 1.3.1
+     */
+    public static Promise<Result> promiseForClient(final String clientName, final Http.Response response,
+            final Function0<Result> function) {
+        final ClientLimiter limiter = Config.getClientLimiter(clientName);
+        if (limiter == null) {
+            return promiseForClient(function);
+        }
+        if (!limiter.tryAcquire()) {
+            return Promise.pure(rejected(clientName, limiter, response));
+        }
+        try {
+            return Promise.promise(new Function0<Result>() {
+                public Result apply() throws Throwable {
+                    try {
+                        return function.apply();
+                    } finally {
+                        limiter.release();
+                    }
                 }
+            }, HttpExecution.fromThread(Config.getClientExecutionContext()));
+        } catch (final RejectedExecutionException e) {
+            limiter.release();
+            return Promise.pure(serviceUnavailable(e));
+        }
+    }
+
+    // released before the returned promise is completed
+    private static <A> Promise<A> releaseOnCompletion(final ClientLimiter limiter, final Promise<A> promise) {
+        return promise.map(new Function<A, A>() {
+            public A apply(final A result) {
+                limiter.release();
+                return result;
+            }
+        }).recover(new Function<Throwable, A>() {
+            public A apply(final Throwable t) throws Throwable {
+                limiter.release();
+                throw t;
+            }
+        });
+    }
+
+    private static Result rejected(final String clientName, final ClientLimiter limiter, final Http.Response response) {
+        // cheap rejection: no warn logging under load
+        logger.debug("client call rejected by admission limits : {} {}", clientName, limiter);
+        Config.getMetricsRegistry().increment(MetricsRegistry.ADMISSION_REJECTED + clientName, 1);
+        response.setHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(limiter.getRetryAfterSeconds()));
+        return status(Http.Status.SERVICE_UNAVAILABLE, Config.getErrorPage503()).as(Constants.HTML_CONTENT_TYPE);
+    }
+
+    /**
+     * This method returns the 503 error page when a call to the store is rejected because the
+     * {@link Config#getStorageExecutionContext()} is saturated.
+     * 
+     * @param e
+     * @return the 503 error page
+     * @since 1.3.1
+     */
+    public static Result storageUnavailable(final RejectedExecutionException e) {
+        logger.warn("storage call rejected : {}", e.getMessage());
+        Config.getMetricsRegistry().increment(MetricsRegistry.STORAGE_REJECTED, 1);
+        return status(Http.Status.SERVICE_UNAVAILABLE, Config.getErrorPage503()).as(Constants.HTML_CONTENT_TYPE);
+    }
+
+    private static Result serviceUnavailable(final RejectedExecutionException e) {
+        logger.warn("client call rejected : {}", e.getMessage());
+        return status(Http.Status.SERVICE_UNAVAILABLE, Config.getErrorPage503()).as(Constants.HTML_CONTENT_TYPE);
+    }
 
-                // get requested url
-                final String requestedUrl = StorageHelper.getRequestedUrl(sessionId, client.getName());
+    /**
+     * This method retrieves the credentials and the user profile, saves it and redirects to the originally requested url.
+     * 
+     * @param client
+     * @param context
+     * @return the redirection to the saved request
+     * @throws RequiresHttpAction
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Result finishAuthentication(final BaseClient client, final JavaWebContext context) throws RequiresHttpAction {
+        // get credentials
+        final Credentials credentials = client.getCredentials(context);
+        logger.debug("credentials : {}", credentials);
+
+        // get user profile
+        final CommonProfile profile = client.getUserProfile(credentials, context);
+        logger.debug("profile : {}", profile);
 
-                // retrieve saved request and redirect
-                return redirect(defaultUrl(requestedUrl, Config.getDefaultSuccessUrl()));
+        return saveProfileAndRedirect(client, context, profile);
+    }
+
+    /**
+     * This method retrieves the credentials on the {@link Config#getClientExecutionContext()} and composes on the asynchronous retrieval
+     * of the user profile by the {@link AsyncClient}: no thread is blocked during the calls to the provider.
+     * 
+     * @param client
+     * @param context
+     * @param metric
+     * @param start
+     * @return the promise of the redirection to the saved request
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Promise<Result> finishAuthenticationAsync(final BaseClient client, final JavaWebContext context,
+                                                             final String metric, final long start) {
+        final Promise<Credentials> credentials;
+        try {
+            credentials = Promise.promise(new Function0<Credentials>() {
+                public Credentials apply() throws RequiresHttpAction {
+                    final StorageScope scope = StorageScope.open();
+                    try {
+                        final Credentials credentials = client.getCredentials(context);
+                        logger.debug("credentials : {}", credentials);
+                        return credentials;
+                    } finally {
+                        scope.close();
+                    }
+                }
+            }, HttpExecution.fromThread(Config.getClientExecutionContext()));
+        } catch (final RejectedExecutionException e) {
+            return Promise.pure(serviceUnavailable(e));
+        }
+        return credentials.flatMap(new Function<Credentials, Promise<CommonProfile>>() {
+            public Promise<CommonProfile> apply(final Credentials credentials) {
+                return ((AsyncClient) client).getUserProfileAsync(credentials, context);
+            }
+        }).map(new Function<CommonProfile, Result>() {
+            public Result apply(final CommonProfile profile) {
+                logger.debug("profile : {}", profile);
+                final Result result;
+                final StorageScope scope = StorageScope.open();
+                try {
+                    result = saveProfileAndRedirect(client, context, profile);
+                } finally {
+                    scope.close();
+                }
+                // the failures are recorded below
+                recordTime(metric, start);
+                return result;
+            }
+        }, HttpExecution.fromThread(Config.getStorageExecutionContext())).recover(new Function<Throwable, Result>() {
+            public Result apply(final Throwable t) throws Throwable {
+                recordTime(metric, start);
+                if (t instanceof RequiresHttpAction) {
+                    return requiresHttpAction(context);
+                }
+                throw t;
             }
         });
+    }
+
+    /**
+     * This method saves the user profile and redirects to the originally requested url.
+     * 
+     * @param client
+     * @param context
+     * @param profile
+     * @return the redirection to the saved request
+     */
+    @SuppressWarnings("rawtypes")
+    private static Result saveProfileAndRedirect(final BaseClient client, final JavaWebContext context, final CommonProfile profile) {
+        // get or create sessionId
+        final String sessionId = StorageHelper.getOrCreationSessionId(context.getSession());
+
+        // save user profile only if it's not null
+        if (profile != null) {
+            // only the attributes used by the application
+            final Set<String> attributes = Config.getProfileAttributes(client.getName());
+            if (attributes != null) {
+                final int removed = ProfileAttributes.project(profile, attributes);
+                logger.debug("removed attributes : {}", removed);
+            }
+            if (StatelessProfileHelper.isEnabled()) {
+                StatelessProfileHelper.saveProfile(context.getSession(), profile);
+            } else {
+                StorageHelper.saveProfile(sessionId, profile);
+                if (Config.getProfileRefreshRatio() > 0) {
+                    // start of the sliding expiration
+                    context.getSession().put(Constants.PROFILE_REFRESHED, String.valueOf(System.currentTimeMillis()));
+                }
+            }
+        }
+
+        // get requested url
+        final String requestedUrl = StorageHelper.getRequestedUrl(context.getSession(), sessionId, client.getName());
+
+        // retrieve saved request and redirect
+        return redirect(defaultUrl(requestedUrl, Config.getDefaultSuccessUrl()));
+    }
 
-        return promise;
+    /**
+     * This method returns the result of the specific HTTP action required by the client.
+     * 
+     * @param context
+     * @return the result
+     */
+    private static Result requiresHttpAction(final JavaWebContext context) {
+        final int code = context.getResponseStatus();
+        logger.debug("requires HTTP action : {}", code);
+        if (code == HttpConstants.UNAUTHORIZED) {
+            return unauthorized(Config.getErrorPage401()).as(Constants.HTML_CONTENT_TYPE);
+        } else if (code == HttpConstants.TEMP_REDIRECT) {
+            return Results.status(HttpConstants.TEMP_REDIRECT);
+        } else if (code == HttpConstants.OK) {
+            final String content = context.getResponseContent();
+            logger.debug("render : {}", content);
+            return ok(content).as(Constants.HTML_CONTENT_TYPE);
+        }
+        final String message = "Unsupported HTTP action : " + code;
+        logger.error(message);
+        throw new TechnicalException(message);
     }
 
     /**
@@ -122,11 +355,13 @@ public class CallbackController extends Controller {
         final String sessionId = session(Constants.SESSION_ID);
         logger.debug("sessionId for logout : {}", sessionId);
         if (StringUtils.isNotBlank(sessionId)) {
-            // remove user profile from cache
+            // remove user profile from cache and from the near cache
             StorageHelper.removeProfile(sessionId);
             logger.debug("remove user profile for sessionId : {}", sessionId);
         }
         session().remove(Constants.SESSION_ID);
+        session().remove(Constants.PROFILE_REFRESHED);
+        StatelessProfileHelper.removeProfile(session());
     }
 
     /**
@@ -0,0 +1,160 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class limits the callbacks and the redirection computations of a client (see
+ * {@link Config#setClientLimiter(String, ClientLimiter)}): a rate (token bucket) and a number of concurrent calls. An excess request is
+ * rejected immediately with a 503 error and a <code>Retry-After</code> header instead of waiting for a slow identity provider.
+ * <p />
+ * The token bucket is a single timestamp (the theoretical arrival time of the next request) updated by compare-and-set: no lock is held.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class ClientLimiter {
+
+    private final long intervalNanos;
+
+    private final long burstNanos;
+
+    private final int maxConcurrency;
+
+    // theoretical arrival time of the next request
+    private final AtomicLong nextArrival;
+
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+
+    private final AtomicLong rateRejectedCount = new AtomicLong();
+
+    private final AtomicLong concurrencyRejectedCount = new AtomicLong();
+
+    /**
+     * Build a client limiter.
+     *
+     * @param permitsPerSecond the sustained rate (0 for no rate limit)
+     * @param burst the number of requests accepted at once above the rate
+     * @param maxConcurrency the maximum number of concurrent calls (0 for no concurrency limit)
+     */
+    public ClientLimiter(final double permitsPerSecond, final int burst, final int maxConcurrency) {
+        if (permitsPerSecond < 0 || burst < 1 || maxConcurrency < 0) {
+            throw new IllegalArgumentException("permitsPerSecond and maxConcurrency must not be negative and burst must be positive");
+        }
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        this.burstNanos = this.intervalNanos * burst;
+        this.maxConcurrency = maxConcurrency;
+        this.nextArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Try to start a call: {@link #release()} must be called when it's finished.
+     *
+     * @return if the call is admitted
+     */
+    public boolean tryAcquire() {
+        if (!acquireConcurrency()) {
+            this.concurrencyRejectedCount.incrementAndGet();
+            return false;
+        }
+        if (!acquireRate(System.nanoTime())) {
+            this.inFlightCount.decrementAndGet();
+            this.rateRejectedCount.incrementAndGet();
+            return false;
+        }
+        this.admittedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Finish an admitted call.
+     */
+    public void release() {
+        this.inFlightCount.decrementAndGet();
+    }
+
+    private boolean acquireConcurrency() {
+        for (;;) {
+            final int current = this.inFlightCount.get();
+            if (this.maxConcurrency > 0 && current >= this.maxConcurrency) {
+                return false;
+            }
+            if (this.inFlightCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    boolean acquireRate(final long now) {
+        if (this.intervalNanos == 0) {
+            return true;
+        }
+        for (;;) {
+            final long current = this.nextArrival.get();
+            final long next = Math.max(current, now) + this.intervalNanos;
+            if (next - now > this.burstNanos) {
+                return false;
+            }
+            if (this.nextArrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the number of seconds after which a rejected request should be retried.
+     *
+     * @return the number of seconds (at least 1)
+     */
+    public long getRetryAfterSeconds() {
+        if (this.intervalNanos == 0) {
+            return 1;
+        }
+        final long wait = this.nextArrival.get() + this.intervalNanos - this.burstNanos - System.nanoTime();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public int getInFlightCount() {
+        return this.inFlightCount.get();
+    }
+
+    public long getAdmittedCount() {
+        return this.admittedCount.get();
+    }
+
+    public long getRateRejectedCount() {
+        return this.rateRejectedCount.get();
+    }
+
+    public long getConcurrencyRejectedCount() {
+        return this.concurrencyRejectedCount.get();
+    }
+
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientLimiter[inFlight=" + getInFlightCount() + ", admitted=" + getAdmittedCount() + ", rateRejected="
+                + getRateRejectedCount() + ", concurrencyRejected=" + getConcurrencyRejectedCount() + "]";
+    }
+}
@@ -0,0 +1,173 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pac4j.core.client.Client;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.credentials.Credentials;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.UserProfile;
+import org.pac4j.play.java.RequiresAuthentication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import play.mvc.Http.Request;
+
+/**
+ * This class indexes the clients by name. It's built by {@link Config#setClients(Clients)} (the clients are initialized at this time)
+ * and replaces the linear lookups of the {@link Clients} on each callback and each redirection to a provider.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class ClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientRegistry.class);
+
+    private final Clients clients;
+
+    private final String clientNameParameter;
+
+    private final Map<String, Client<Credentials, UserProfile>> clientsByName;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public ClientRegistry(final Clients clients) {
+        this.clients = clients;
+        this.clientNameParameter = clients.getClientNameParameter();
+        final List<Client> list = clients.findAllClients();
+        final Map<String, Client<Credentials, UserProfile>> map = new HashMap<String, Client<Credentials, UserProfile>>(
+                list.size() * 2);
+        for (final Client client : list) {
+            final String name = client.getName();
+            // like Clients.findClient: the first one wins
+            if (map.containsKey(name)) {
+                logger.warn("Several clients are named {}, only the first one is used", name);
+            } else {
+                map.put(name, client);
+            }
+        }
+        this.clientsByName = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Find a client by its name.
+     *
+     * @param name
+     * @return the client
+     */
+    public Client<Credentials, UserProfile> findClient(final String name) {
+        final Client<Credentials, UserProfile> client = name != null ? this.clientsByName.get(name) : null;
+        if (client == null) {
+            final String message = "No client found for name: " + name;
+            logger.error(message);
+            throw new TechnicalException(message);
+        }
+        return client;
+    }
+
+    /**
+     * Find the client of a callback request from the client name parameter.
+     *
+     * @param request
+     * @return the client
+     */
+    public Client<Credentials, UserProfile> findClient(final Request request) {
+        final String name = getClientName(request);
+        if (name == null || name.trim().length() == 0) {
+            throw new TechnicalException("No " + this.clientNameParameter + " parameter in the callback request");
+        }
+        return findClient(name);
+    }
+
+    /**
+     * Extract the client name parameter of a request: the url parameter first, then the form parameter, without merging all the
+     * parameters.
+     *
+     * @param request
+     * @return the client name or <code>null</code> if none
+     */
+    String getClientName(final Request request) {
+        final String name = request.getQueryString(this.clientNameParameter);
+        if (name != null) {
+            return name;
+        }
+        final Map<String, String[]> formParameters = request.body().asFormUrlEncoded();
+        if (formParameters != null) {
+            final String[] values = formParameters.get(this.clientNameParameter);
+            if (values != null && values.length > 0) {
+                return values[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that all the client names referenced by the {@link RequiresAuthentication} annotations of the controllers (on the classes
+     * and their methods) exist.
+     *
+     * @param controllers
+     */
+    public void validate(final Class<?>... controllers) {
+        final Set<String> unknownNames = new LinkedHashSet<String>();
+        for (final Class<?> controller : controllers) {
+            checkAnnotation(controller, unknownNames);
+            for (final Method method : controller.getMethods()) {
+                checkAnnotation(method, unknownNames);
+            }
+            for (final Method method : controller.getDeclaredMethods()) {
+                checkAnnotation(method, unknownNames);
+            }
+        }
+        if (!unknownNames.isEmpty()) {
+            final String message = "No client found for names: " + unknownNames + " (defined: " + getClientNames() + ")";
+            logger.error(message);
+            throw new TechnicalException(message);
+        }
+    }
+
+    private void checkAnnotation(final AnnotatedElement element, final Set<String> unknownNames) {
+        final RequiresAuthentication annotation = element.getAnnotation(RequiresAuthentication.class);
+        if (annotation != null && !this.clientsByName.containsKey(annotation.clientName())) {
+            unknownNames.add(annotation.clientName());
+        }
+    }
+
+    public Set<String> getClientNames() {
+        return this.clientsByName.keySet();
+    }
+
+    public Clients getClients() {
+        return this.clients;
+    }
+
+    public String getClientNameParameter() {
+        return this.clientNameParameter;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientRegistry" + getClientNames();
+    }
+}
@@ -16,6 +16,26 @@
 package org.pac4j.play;
 
 import org.pac4j.core.client.Clients;
+import org.pac4j.play.crypto.SecureRandomSessionIdGenerator;
+import org.pac4j.play.crypto.SessionIdGenerator;
+import org.pac4j.play.crypto.TokenCrypter;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.metrics.NoOpMetricsRegistry;
+import org.pac4j.play.store.BinaryProfileCodec;
+import org.pac4j.play.store.NearCache;
+import org.pac4j.play.store.PlayCacheStore;
+import org.pac4j.play.store.ProfileCodec;
+import org.pac4j.play.store.SessionStore;
+import org.pac4j.play.store.StoreExecutionContext;
+
+import scala.concurrent.ExecutionContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 /**
@@ -39,18 +59,61 @@ public final class Config {
 
     // 1 hour = 3600 seconds
     private static int profileTimeout = 3600;
+
+    // fraction of the profile timeout between two refreshes of the expiration (0: fixed expiration)
+    private static double profileRefreshRatio = 0;
+
+    // requested urls saved in the session cookie up to this length (0 = disabled)
+    private static int requestedUrlInSessionMaxLength = 0;
     
     // 1 minute = 60 second
     private static int sessionTimeout = 60;
     
     // all the clients
     private static Clients clients;
+
+    // the clients indexed by name
+    private static ClientRegistry clientRegistry;
     
     private static String errorPage401 = "authentication required";
     
     private static String errorPage403 = "forbidden";
 
+    private static String errorPage503 = "service unavailable";
+
     private static String cacheKeyPrefix = "";
+
+    private static SessionStore store = new PlayCacheStore();
+
+    private static ProfileCodec profileCodec = new BinaryProfileCodec();
+
+    // one store entry per session attribute by default
+    private static boolean sessionBucket = false;
+
+    // no local cache of profiles by default
+    private static NearCache nearCache;
+
+    // profiles are stored in cache by default
+    private static TokenCrypter profileCrypter;
+
+    // CAS logout requests are processed synchronously by default
+    private static LogoutQueue logoutQueue;
+
+    // created on first use (double-checked: no lock once created)
+    private static volatile ExecutionContext storageExecutionContext;
+
+    // created on first use (double-checked: no lock once created)
+    private static volatile ExecutionContext clientExecutionContext;
+
+    // the admission limits by client name
+    private static final ConcurrentMap<String, ClientLimiter> clientLimiters = new ConcurrentHashMap<String, ClientLimiter>();
+
+    // the attributes kept in the profiles by client name
+    private static final ConcurrentMap<String, Set<String>> profileAttributes = new ConcurrentHashMap<String, Set<String>>();
+
+    private static MetricsRegistry metricsRegistry = new NoOpMetricsRegistry();
+
+    private static SessionIdGenerator sessionIdGenerator = new SecureRandomSessionIdGenerator();
     
     public static String getDefaultSuccessUrl() {
         return defaultSuccessUrl;
@@ -76,6 +139,50 @@ public final class Config {
         Config.profileTimeout = profileTimeout;
     }
     
+    /**
+     * Gets the fraction of the profile timeout after which the expiration of the profile of an active user is refreshed
+     *
+     * @return the ratio, 0 if the profile expires after the timeout whatever the user activity
+     * @since 1.3.1
+     */
+    public static double getProfileRefreshRatio() {
+        return profileRefreshRatio;
+    }
+
+    /**
+     * Sets the fraction of the profile timeout after which the expiration of the profile of an active user is refreshed (sliding
+     * expiration): with 0.25 and a one hour timeout, the profile is saved again at most every 15 minutes. 0 (default) disables it.
+     *
+     * @param profileRefreshRatio between 0 and 1
+     * @since 1.3.1
+     */
+    public static void setProfileRefreshRatio(final double profileRefreshRatio) {
+        if (profileRefreshRatio < 0 || profileRefreshRatio > 1) {
+            throw new IllegalArgumentException("profileRefreshRatio must be between 0 and 1");
+        }
+        Config.profileRefreshRatio = profileRefreshRatio;
+    }
+
+    public static int getRequestedUrlInSessionMaxLength() {
+        return requestedUrlInSessionMaxLength;
+    }
+
+    /**
+     * Sets the maximum length of the requested urls saved in the Play session cookie (signed, not encrypted, by Play) instead of
+     * the storage. Longer urls are still saved in the storage. 0 (default) disables it: the requested url of each anonymous
+     * redirection is then written into the storage. Even when enabled, the clients which save session attributes during the
+     * redirection (like the OAuth clients with their state) still write into the storage.
+     *
+     * @param requestedUrlInSessionMaxLength the maximum length of the requested urls in the session cookie
+     * @since 1.3.1
+     */
+    public static void setRequestedUrlInSessionMaxLength(final int requestedUrlInSessionMaxLength) {
+        if (requestedUrlInSessionMaxLength < 0) {
+            throw new IllegalArgumentException("requestedUrlInSessionMaxLength must be positive");
+        }
+        Config.requestedUrlInSessionMaxLength = requestedUrlInSessionMaxLength;
+    }
+
     public static int getSessionTimeout() {
         return sessionTimeout;
     }
@@ -87,8 +194,24 @@ public final class Config {
     public static Clients getClients() {
         return clients;
     }
+
+    /**
+     * Gets the clients indexed by name
+     *
+     * @return the registry or <code>null</code> if no clients are defined
+     * @since 1.3.1
+     */
+    public static ClientRegistry getClientRegistry() {
+        return clientRegistry;
+    }
     
+    /**
+     * Sets the clients and builds the {@link ClientRegistry} (the clients are initialized, they must be fully configured)
+     *
+     * @param clients
+     */
     public static void setClients(final Clients clients) {
+        Config.clientRegistry = clients != null ? new ClientRegistry(clients) : null;
         Config.clients = clients;
     }
     
@@ -108,6 +231,14 @@ public final class Config {
         Config.errorPage403 = errorPage403;
     }
 
+    public static String getErrorPage503() {
+        return errorPage503;
+    }
+
+    public static void setErrorPage503(final String errorPage503) {
+        Config.errorPage503 = errorPage503;
+    }
+
     public static Pattern getLogoutUrlPattern() {
         return logoutUrlPattern;
     }
@@ -135,4 +266,296 @@ public final class Config {
     public static void setCacheKeyPrefix(String cacheKeyPrefix) {
         Config.cacheKeyPrefix = cacheKeyPrefix;
     }
+
+    /**
+     * Gets the store used for all cache operations
+     *
+     * @return the store
+     * @since 1.3.1
+     */
+    public static SessionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Sets the store to use for all cache operations (the Play cache by default)
+     *
+     * @param store
+     * @since 1.3.1
+     */
+    public static void setStore(final SessionStore store) {
+        Config.store = store;
+    }
+
+    /**
+     * Gets the local cache of user profiles in front of the store
+     *
+     * @return the near cache or <code>null</code> if disabled
+     * @since 1.3.1
+     */
+    public static NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Sets the local cache of user profiles in front of the store (disabled by default)
+     *
+     * @param nearCache
+     * @since 1.3.1
+     */
+    public static void setNearCache(final NearCache nearCache) {
+        Config.nearCache = nearCache;
+    }
+
+    /**
+     * Gets the crypter used to store the user profile in the session cookie
+     *
+     * @return the crypter or <code>null</code> if profiles are stored in cache
+     * @since 1.3.1
+     */
+    public static TokenCrypter getProfileCrypter() {
+        return profileCrypter;
+    }
+
+    /**
+     * Sets the secrets to encrypt and sign the user profile stored in the session cookie instead of the cache. The first secret is used
+     * to create new cookies, the others are still accepted (key rotation). No secret means profiles are stored in cache (default).
+     *
+     * @param secrets
+     * @since 1.3.1
+     */
+    public static void setStatelessProfileSecrets(final String... secrets) {
+        if (secrets == null || secrets.length == 0) {
+            Config.profileCrypter = null;
+        } else {
+            Config.profileCrypter = new TokenCrypter(secrets);
+        }
+    }
+
+    /**
+     * Gets the codec used to convert user profiles to bytes before saving them in the store
+     *
+     * @return the codec or <code>null</code> if profiles are saved as objects
+     * @since 1.3.1
+     */
+    public static ProfileCodec getProfileCodec() {
+        return profileCodec;
+    }
+
+    /**
+     * Sets the codec used to convert user profiles to bytes before saving them in the store ({@link BinaryProfileCodec} by default).
+     * With an in-process store (no serialization), <code>null</code> saves the profile objects as is.
+     *
+     * @param profileCodec
+     * @since 1.3.1
+     */
+    public static void setProfileCodec(final ProfileCodec profileCodec) {
+        Config.profileCodec = profileCodec;
+    }
+
+    /**
+     * Whether all the attributes of a session are saved in a single store entry
+     *
+     * @return if session buckets are used
+     * @since 1.3.1
+     */
+    public static boolean isSessionBucket() {
+        return sessionBucket;
+    }
+
+    /**
+     * Defines if all the attributes of a session (requested urls, client states...) are saved in a single store entry, read once per
+     * request and removed at logout, instead of one entry per attribute (default). The profile is always saved in its own entry. With a
+     * distributed store, concurrent updates of the attributes of the same session on several nodes are not merged: the last write
+     * wins.
+     *
+     * @param sessionBucket
+     * @since 1.3.1
+     */
+    public static void setSessionBucket(final boolean sessionBucket) {
+        Config.sessionBucket = sessionBucket;
+    }
+
+    /**
+     * Gets the queue used to process CAS logout requests asynchronously
+     *
+     * @return the queue or <code>null</code> if logout requests are processed synchronously
+     * @since 1.3.1
+     */
+    public static LogoutQueue getLogoutQueue() {
+        return logoutQueue;
+    }
+
+    /**
+     * Sets the queue used to process CAS logout requests asynchronously (synchronous processing by default). The previous queue is
+     * stopped for good: the requests which still offer it their tickets process them synchronously.
+     *
+     * @param logoutQueue
+     * @since 1.3.1
+     */
+    public static void setLogoutQueue(final LogoutQueue logoutQueue) {
+        final LogoutQueue previous = Config.logoutQueue;
+        Config.logoutQueue = logoutQueue;
+        if (previous != null && previous != logoutQueue) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Gets the execution context running the blocking calls to the store for the asynchronous methods of the {@link StorageHelper}
+     *
+     * @return the execution context
+     * @since 1.3.1
+     */
+    public static ExecutionContext getStorageExecutionContext() {
+        ExecutionContext executionContext = storageExecutionContext;
+        if (executionContext == null) {
+            synchronized (Config.class) {
+                executionContext = storageExecutionContext;
+                if (executionContext == null) {
+                    executionContext = new StoreExecutionContext();
+                    storageExecutionContext = executionContext;
+                }
+            }
+        }
+        return executionContext;
+    }
+
+    /**
+     * Sets the execution context running the blocking calls to the store for the asynchronous methods of the {@link StorageHelper}
+     * (a pool of {@link StoreExecutionContext#DEFAULT_THREADS} threads by default).
+     *
+     * @param storageExecutionContext
+     * @since 1.3.1
+     */
+    public static synchronized void setStorageExecutionContext(final ExecutionContext storageExecutionContext) {
+        Config.storageExecutionContext = storageExecutionContext;
+    }
+
+    /**
+     * Gets the execution context running the calls to the identity providers (callback and redirection computations)
+     *
+     * @return the execution context
+     * @since 1.3.1
+     */
+    public static ExecutionContext getClientExecutionContext() {
+        ExecutionContext executionContext = clientExecutionContext;
+        if (executionContext == null) {
+            synchronized (Config.class) {
+                executionContext = clientExecutionContext;
+                if (executionContext == null) {
+                    executionContext = new Bulkhead();
+                    clientExecutionContext = executionContext;
+                }
+            }
+        }
+        return executionContext;
+    }
+
+    /**
+     * Sets the execution context running the calls to the identity providers (callback and redirection computations), a
+     * {@link Bulkhead} of {@link Bulkhead#DEFAULT_MAX_THREADS} threads by default. A rejected task returns a 503 error.
+     *
+     * @param clientExecutionContext
+     * @since 1.3.1
+     */
+    public static synchronized void setClientExecutionContext(final ExecutionContext clientExecutionContext) {
+        Config.clientExecutionContext = clientExecutionContext;
+    }
+
+    /**
+     * Gets the admission limits of a client
+     *
+     * @param clientName
+     * @return the client limiter or <code>null</code> if the client is not limited
+     * @since 1.3.1
+     */
+    public static ClientLimiter getClientLimiter(final String clientName) {
+        return clientName != null ? clientLimiters.get(clientName) : null;
+    }
+
+    /**
+     * Sets the admission limits (rate and concurrency) of the callbacks and redirection computations of a client. A rejected request
+     * returns a 503 error with a <code>Retry-After</code> header.
+     *
+     * @param clientName
+     * @param clientLimiter the client limiter or <code>null</code> to remove the limits
+     * @since 1.3.1
+     */
+    public static void setClientLimiter(final String clientName, final ClientLimiter clientLimiter) {
+        if (clientLimiter != null) {
+            clientLimiters.put(clientName, clientLimiter);
+        } else {
+            clientLimiters.remove(clientName);
+        }
+    }
+
+    /**
+     * Gets the attributes kept in the profiles of a client
+     *
+     * @param clientName
+     * @return the attribute names or <code>null</code> if all the attributes are kept
+     * @since 1.3.1
+     */
+    public static Set<String> getProfileAttributes(final String clientName) {
+        return clientName != null ? profileAttributes.get(clientName) : null;
+    }
+
+    /**
+     * Sets the attributes kept in the profiles of a client: the other attributes returned by the provider are removed before the
+     * profile is saved (in storage or in the session cookie).
+     *
+     * @param clientName
+     * @param names the attribute names or <code>null</code> to keep all the attributes (default)
+     * @since 1.3.1
+     */
+    public static void setProfileAttributes(final String clientName, final String... names) {
+        if (names != null) {
+            profileAttributes.put(clientName, Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(names))));
+        } else {
+            profileAttributes.remove(clientName);
+        }
+    }
+
+    /**
+     * Gets the registry recording the metrics of the authentication, callback, storage and logout operations
+     *
+     * @return the metrics registry
+     * @since 1.3.1
+     */
+    public static MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Sets the registry recording the metrics of the authentication, callback, storage and logout operations (nothing is recorded by
+     * default, see {@link org.pac4j.play.metrics.InMemoryMetricsRegistry}).
+     *
+     * @param metricsRegistry
+     * @since 1.3.1
+     */
+    public static void setMetricsRegistry(final MetricsRegistry metricsRegistry) {
+        Config.metricsRegistry = metricsRegistry != null ? metricsRegistry : new NoOpMetricsRegistry();
+    }
+
+    /**
+     * Gets the generator of the session identifiers
+     *
+     * @return the session id generator
+     * @since 1.3.1
+     */
+    public static SessionIdGenerator getSessionIdGenerator() {
+        return sessionIdGenerator;
+    }
+
+    /**
+     * Sets the generator of the session identifiers (128-bit random identifiers by default, see
+     * {@link SecureRandomSessionIdGenerator})
+     *
+     * @param sessionIdGenerator
+     * @since 1.3.1
+     */
+    public static void setSessionIdGenerator(final SessionIdGenerator sessionIdGenerator) {
+        Config.sessionIdGenerator = sessionIdGenerator;
+    }
 }
@@ -27,6 +27,14 @@ public interface Constants {
     
     public final static String REQUESTED_URL = "pac4jRequestedUrl";
     
+    public final static String PROFILE = "pac4jProfile";
+    
+    public final static String SESSION_BUCKET = "pac4jSessionBucket";
+
+    public final static String PROFILE_REFRESHED = "pac4jProfileRefreshed";
+
+    public final static String CAS_TICKET = "pac4jCasTicket";
+    
     public final static String REDIRECT_URL_LOGOUT_PARAMETER_NAME = "url";
     
     public final static String CLIENT_NAME = "clientName";
@@ -0,0 +1,236 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class processes the CAS logout requests asynchronously: the tickets are queued by the {@link PlayLogoutHandler} (so that the
+ * CAS server is acknowledged immediately) and a background thread destroys the corresponding sessions by batches. When the queue is
+ * full, the logout request is processed synchronously.
+ * <p />
+ * It's enabled by {@link Config#setLogoutQueue(LogoutQueue)}. Once stopped, a queue cannot be restarted: it refuses the new tickets,
+ * which are then processed synchronously.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class LogoutQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogoutQueue.class);
+
+    public final static int DEFAULT_CAPACITY = 10000;
+
+    public final static int DEFAULT_BATCH_SIZE = 100;
+
+    // the drain rate is computed over this period
+    private final static long RATE_PERIOD = 1000L;
+
+    private final BlockingQueue<String> tickets;
+
+    private final int batchSize;
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private volatile double drainRate;
+
+    private long rateTime = System.currentTimeMillis();
+
+    private long rateCount;
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+    // terminal state
+    private volatile boolean stopped;
+
+    public LogoutQueue() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public LogoutQueue(final int capacity, final int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be positive");
+        }
+        this.tickets = new ArrayBlockingQueue<String>(capacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queue a ticket whose session must be destroyed (the background thread is started if necessary).
+     *
+     * @param ticket
+     * @return if the ticket is queued, <code>false</code> if the queue is full or stopped
+     */
+    public boolean offer(final String ticket) {
+        if (this.stopped) {
+            return false;
+        }
+        // no lock once the worker is running
+        if (!this.running && !startWorker()) {
+            return false;
+        }
+        if (!this.tickets.offer(ticket)) {
+            this.rejectedCount.incrementAndGet();
+            return false;
+        }
+        // stopped meanwhile: the worker may have exited without processing this ticket
+        if (this.stopped && this.tickets.remove(ticket)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Start the background thread.
+     */
+    public void start() {
+        if (!startWorker()) {
+            throw new IllegalStateException("A stopped LogoutQueue cannot be restarted");
+        }
+    }
+
+    private synchronized boolean startWorker() {
+        if (this.stopped) {
+            return false;
+        }
+        if (this.running) {
+            return true;
+        }
+        this.running = true;
+        this.worker = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "pac4j-logout");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        return true;
+    }
+
+    /**
+     * Stop the background thread for good (the queued tickets are processed before).
+     */
+    public synchronized void stop() {
+        this.stopped = true;
+        this.running = false;
+        if (this.worker == null) {
+            return;
+        }
+        this.worker.interrupt();
+        try {
+            this.worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // still processing the remaining tickets: kept to be joined by a next stop
+        if (this.worker.isAlive()) {
+            logger.warn("logout worker still running after 10 seconds : {} tickets left", getQueueDepth());
+        } else {
+            this.worker = null;
+        }
+    }
+
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    private void drain() {
+        final List<String> batch = new ArrayList<String>(this.batchSize);
+        while (this.running || !this.tickets.isEmpty()) {
+            try {
+                if (this.tickets.drainTo(batch, this.batchSize) == 0) {
+                    final String ticket = this.tickets.poll(RATE_PERIOD, TimeUnit.MILLISECONDS);
+                    if (ticket != null) {
+                        batch.add(ticket);
+                        this.tickets.drainTo(batch, this.batchSize - 1);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                // stop requested: process the remaining tickets
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    PlayLogoutHandler.destroySessions(batch);
+                } catch (final RuntimeException e) {
+                    logger.error("Cannot destroy sessions for tickets : " + batch, e);
+                }
+                this.processedCount.addAndGet(batch.size());
+                batch.clear();
+            }
+            updateDrainRate();
+        }
+    }
+
+    private void updateDrainRate() {
+        final long now = System.currentTimeMillis();
+        final long elapsed = now - this.rateTime;
+        if (elapsed >= RATE_PERIOD) {
+            final long count = this.processedCount.get();
+            this.drainRate = (count - this.rateCount) * 1000d / elapsed;
+            this.rateCount = count;
+            this.rateTime = now;
+        }
+    }
+
+    /**
+     * Return the number of tickets waiting to be processed.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return this.tickets.size();
+    }
+
+    /**
+     * Return the number of tickets processed per second (over the last second).
+     *
+     * @return the drain rate
+     */
+    public double getDrainRate() {
+        return this.drainRate;
+    }
+
+    public long getProcessedCount() {
+        return this.processedCount.get();
+    }
+
+    /**
+     * Return the number of tickets processed synchronously because the queue was full.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LogoutQueue[depth: " + getQueueDepth() + ", processed: " + getProcessedCount() + ", rejected: " + getRejectedCount()
+                + ", drainRate: " + getDrainRate() + "/s]";
+    }
+}
@@ -15,15 +15,30 @@
  */
 package org.pac4j.play;
 
-import org.apache.commons.lang3.StringUtils;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.pac4j.cas.logout.NoLogoutHandler;
 import org.pac4j.core.context.WebContext;
 import org.pac4j.play.java.JavaWebContext;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.store.NearCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class handles logout requests from CAS server.
+ * <p />
+ * If a {@link Config#getLogoutQueue()} is defined, the session is destroyed asynchronously and the CAS server is acknowledged
+ * immediately.
  * 
  * @author Jerome Leleu
  * @since 1.1.0
@@ -32,16 +47,94 @@ public final class PlayLogoutHandler extends NoLogoutHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(PlayLogoutHandler.class);
     
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    
+    static {
+        // no DTD, no external entities (XXE)
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+    
     @Override
     public void destroySession(final WebContext context) {
         final String logoutRequest = context.getRequestParameter("logoutRequest");
         logger.debug("logoutRequest : {}", logoutRequest);
-        final String ticket = StringUtils.substringBetween(logoutRequest, "SessionIndex>", "</");
+        final String ticket = getSessionIndex(logoutRequest);
         logger.debug("extract ticket : {}", ticket);
-        final String sessionId = (String) StorageHelper.get(ticket);
-        logger.debug("found sessionId : {}", sessionId);
-        StorageHelper.removeProfile(sessionId);
-        StorageHelper.remove(ticket);
+        if (ticket == null) {
+            return;
+        }
+        final LogoutQueue queue = Config.getLogoutQueue();
+        if (queue == null || !queue.offer(ticket)) {
+            destroySessions(Collections.singletonList(ticket));
+        }
+    }
+    
+    /**
+     * Destroy the sessions of the CAS tickets: the ticket -> session id mappings are read in a single call to the store and all the
+     * removals are sent together.
+     * 
+     * @param tickets
+     */
+    static void destroySessions(final Collection<String> tickets) {
+        final List<String> sessionIds = new ArrayList<String>();
+        final StorageScope scope = StorageScope.open();
+        try {
+            for (final Object sessionId : StorageHelper.getAll(tickets).values()) {
+                sessionIds.add((String) sessionId);
+            }
+            logger.debug("found sessionIds : {}", sessionIds);
+            for (final String sessionId : sessionIds) {
+                // also invalidates the near cache of this node
+                StorageHelper.removeProfile(sessionId);
+            }
+            StorageHelper.removeAll(tickets);
+            if (!sessionIds.isEmpty()) {
+                Config.getMetricsRegistry().increment(MetricsRegistry.LOGOUT, sessionIds.size());
+            }
+        } finally {
+            scope.close();
+        }
+        // the profiles read by other requests until the removals were flushed must not stay in the near cache
+        final NearCache nearCache = Config.getNearCache();
+        if (nearCache != null) {
+            for (final String sessionId : sessionIds) {
+                nearCache.invalidate(sessionId);
+            }
+        }
+    }
+    
+    /**
+     * Extract the ticket (<code>SessionIndex</code> element) from a CAS logout request with a streaming parser.
+     * 
+     * @param logoutRequest
+     * @return the ticket or <code>null</code> if not found or invalid
+     */
+    static String getSessionIndex(final String logoutRequest) {
+        if (logoutRequest == null) {
+            return null;
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(new StringReader(logoutRequest));
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "SessionIndex".equals(reader.getLocalName())) {
+                    final String ticket = reader.getElementText().trim();
+                    return ticket.length() > 0 ? ticket : null;
+                }
+            }
+        } catch (final XMLStreamException e) {
+            logger.warn("invalid logoutRequest : {}", e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+        return null;
     }
     
     @Override
@@ -51,5 +144,7 @@ public final class PlayLogoutHandler extends NoLogoutHandler {
         final String sessionId = javaWebContext.getSession().get(Constants.SESSION_ID);
         logger.debug("save sessionId : {}", sessionId);
         StorageHelper.save(ticket, sessionId, Config.getProfileTimeout());
+        // the mapping is extended with the profile by the sliding expiration
+        javaWebContext.getSession().put(Constants.CAS_TICKET, ticket);
     }
 }
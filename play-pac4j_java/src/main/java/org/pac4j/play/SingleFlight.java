@@ -0,0 +1,142 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.pac4j.core.exception.TechnicalException;
+
+import play.libs.F.Function;
+import play.libs.F.Function0;
+import play.libs.F.Promise;
+
+/**
+ * This class coalesces the concurrent loads of the same key: the first caller runs the load, the others wait for its result instead
+ * of calling the store again (for example the parallel requests of a page for the same session).
+ * <p />
+ * A load is removed from the table once completed, by its owner only (conditional removal), so there is no lock and no stale entry.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+final class SingleFlight<V> {
+
+    private final ConcurrentMap<String, FutureTask<V>> loads = new ConcurrentHashMap<String, FutureTask<V>>();
+
+    private final ConcurrentMap<String, FutureTask<Promise<V>>> asyncLoads = new ConcurrentHashMap<String, FutureTask<Promise<V>>>();
+
+    /**
+     * Load a value or wait for the load in progress for the same key.
+     * 
+     * @param key
+     * @param loader
+     * @return the loaded value
+     */
+    V load(final String key, final Callable<V> loader) {
+        FutureTask<V> task = this.loads.get(key);
+        if (task == null) {
+            final FutureTask<V> newTask = new FutureTask<V>(loader);
+            task = this.loads.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    newTask.run();
+                } finally {
+                    this.loads.remove(key, newTask);
+                }
+            }
+        }
+        return getResult(task);
+    }
+
+    /**
+     * Load a value without blocking or share the load in progress for the same key.
+     * 
+     * @param key
+     * @param loader
+     * @return the promise of the loaded value
+     */
+    Promise<V> loadAsync(final String key, final Function0<Promise<V>> loader) {
+        FutureTask<Promise<V>> task = this.asyncLoads.get(key);
+        if (task == null) {
+            final FutureTask<Promise<V>> newTask = new FutureTask<Promise<V>>(new Callable<Promise<V>>() {
+                public Promise<V> call() throws Exception {
+                    try {
+                        return loader.apply();
+                    } catch (final Exception e) {
+                        throw e;
+                    } catch (final Throwable t) {
+                        throw new TechnicalException(t);
+                    }
+                }
+            });
+            task = this.asyncLoads.putIfAbsent(key, newTask);
+            if (task == null) {
+                newTask.run();
+                final Promise<V> promise;
+                try {
+                    promise = getResult(newTask);
+                } catch (final RuntimeException e) {
+                    this.asyncLoads.remove(key, newTask);
+                    throw e;
+                }
+                // removed once completed
+                return promise.map(new Function<V, V>() {
+                    public V apply(final V value) {
+                        asyncLoads.remove(key, newTask);
+                        return value;
+                    }
+                }).recover(new Function<Throwable, V>() {
+                    public V apply(final Throwable t) throws Throwable {
+                        asyncLoads.remove(key, newTask);
+                        throw t;
+                    }
+                });
+            }
+        }
+        return getResult(task);
+    }
+
+    private static <T> T getResult(final FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TechnicalException(cause);
+        }
+    }
+
+    /**
+     * Return the number of loads in progress.
+     * 
+     * @return the number of loads in progress
+     */
+    int size() {
+        return this.loads.size() + this.asyncLoads.size();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.crypto.TokenCrypter;
+import org.pac4j.play.store.BinaryProfileCodec;
+import org.pac4j.play.store.ProfileCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import play.mvc.Http.Session;
+
+/**
+ * This class is an helper to store/retrieve the user profile directly in the Play session cookie (encrypted and signed), without any
+ * cache lookup. It's enabled by {@link Config#setStatelessProfileSecrets(String...)}.
+ * <p />
+ * The profile is rejected after {@link Config#getProfileTimeout()} seconds. As there is no server side state, a CAS logout request
+ * cannot invalidate a profile: it remains valid until it expires or the user logs out from the application.
+ * <p />
+ * The requested url is also kept in the session cookie, but the session attributes of the clients (the OAuth state or request token
+ * for example) are still saved in the {@link Config#getStore()}: with such clients, the callback must reach a node sharing this store
+ * (shared cache or sticky sessions). Clients without session attributes (like CAS) need no shared store at all.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class StatelessProfileHelper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatelessProfileHelper.class);
+
+    // browsers drop cookies larger than 4096 bytes
+    private final static int MAX_TOKEN_LENGTH = 3800;
+
+    // the profile must be converted to bytes even if profiles are saved as objects in the store
+    private static final ProfileCodec defaultCodec = new BinaryProfileCodec();
+
+    /**
+     * Whether the user profile is stored in the session cookie.
+     *
+     * @return if the stateless mode is enabled
+     */
+    public static boolean isEnabled() {
+        return Config.getProfileCrypter() != null;
+    }
+
+    /**
+     * Get the profile from the session cookie.
+     *
+     * @param session
+     * @return the user profile or <code>null</code> if none, invalid or expired
+     */
+    public static CommonProfile getProfile(final Session session) {
+        return deserialize(session.get(Constants.PROFILE));
+    }
+
+    /**
+     * Save a user profile in the session cookie.
+     *
+     * @param session
+     * @param profile
+     */
+    public static void saveProfile(final Session session, final CommonProfile profile) {
+        session.put(Constants.PROFILE, serialize(profile));
+    }
+
+    /**
+     * Remove the user profile from the session cookie.
+     *
+     * @param session
+     */
+    public static void removeProfile(final Session session) {
+        session.remove(Constants.PROFILE);
+    }
+
+    /**
+     * Reissue the token of a user profile if its expiration must be refreshed (sliding expiration).
+     *
+     * @param token the current token
+     * @param profile
+     * @return the new token or <code>null</code> if the current one is recent enough
+     */
+    public static String refreshToken(final String token, final CommonProfile profile) {
+        final long issuedAt = TokenCrypter.getIssuedAt(token);
+        if (StorageHelper.isRefreshDue(issuedAt >= 0 ? issuedAt : null)) {
+            return serialize(profile);
+        }
+        return null;
+    }
+
+    /**
+     * Serialize, encrypt and sign a user profile.
+     *
+     * @param profile
+     * @return the token to store in the session cookie
+     */
+    public static String serialize(final CommonProfile profile) {
+        final String token = getCrypter().seal(getCodec().encode(profile), System.currentTimeMillis());
+        if (token.length() > MAX_TOKEN_LENGTH) {
+            logger.warn("profile token is {} characters long, it may be dropped by the browser", token.length());
+        }
+        return token;
+    }
+
+    /**
+     * Check, decrypt and deserialize a user profile.
+     *
+     * @param token
+     * @return the user profile or <code>null</code> if invalid or expired
+     */
+    public static CommonProfile deserialize(final String token) {
+        if (token == null) {
+            return null;
+        }
+        final byte[] payload = getCrypter().open(token, Config.getProfileTimeout() * 1000L);
+        if (payload == null) {
+            return null;
+        }
+        // the payload is only deserialized once its signature is verified
+        return getCodec().decode(payload);
+    }
+
+    private static TokenCrypter getCrypter() {
+        final TokenCrypter crypter = Config.getProfileCrypter();
+        if (crypter == null) {
+            throw new TechnicalException("No secret defined. Use Config.setStatelessProfileSecrets(secrets)");
+        }
+        return crypter;
+    }
+
+    private static ProfileCodec getCodec() {
+        final ProfileCodec codec = Config.getProfileCodec();
+        return codec != null ? codec : defaultCodec;
+    }
+}
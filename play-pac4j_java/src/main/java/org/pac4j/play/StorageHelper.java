@@ -15,16 +15,40 @@
  */
 package org.pac4j.play;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.apache.commons.lang3.StringUtils;
 import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.store.AsyncSessionStore;
+import org.pac4j.play.store.BinaryProfileCodec;
+import org.pac4j.play.store.NearCache;
+import org.pac4j.play.store.ProfileCodec;
+import org.pac4j.play.store.SessionBucket;
+import org.pac4j.play.store.SessionStore;
+import org.pac4j.play.store.TouchableSessionStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import play.cache.Cache;
+import play.libs.F.Function;
+import play.libs.F.Function0;
+import play.libs.F.Promise;
 import play.mvc.Http.Session;
 
 /**
- * This class is an helper to store/retrieve objects (from cache).
+ * This class is an helper to store/retrieve objects (from the {@link Config#getStore()} store, the Play cache by default).
+ * <p />
+ * The <code>*Async</code> methods never block the current thread: they use the {@link AsyncSessionStore} methods if the store
+ * implements them, otherwise the blocking calls run on the {@link Config#getStorageExecutionContext()}. Their writes are not buffered
+ * in the {@link StorageScope}.
  * 
  * @author Jerome Leleu
  * @since 1.1.0
@@ -32,6 +56,15 @@ import play.mvc.Http.Session;
 public final class StorageHelper {
     
     private static final Logger logger = LoggerFactory.getLogger(StorageHelper.class);
+
+    // requested urls kept in the session cookie in stateless mode (room left for the profile token)
+    private static final int STATELESS_REQUESTED_URL_MAX_LENGTH = 1024;
+
+    // to read profiles saved as bytes when no codec is defined anymore
+    private static final ProfileCodec defaultCodec = new BinaryProfileCodec();
+
+    // in-flight loads of profiles by session id
+    private static final SingleFlight<CommonProfile> profileLoads = new SingleFlight<CommonProfile>();
     
     /**
      * Get a session identifier and generates it if no session exists.
@@ -55,47 +88,226 @@ public final class StorageHelper {
     }
     
     /**
-     * Generate a session identifier.
+     * Generate a session identifier (with the {@link Config#getSessionIdGenerator()}).
      * 
      * @return a session identifier
      */
     public static String generateSessionId() {
-        return java.util.UUID.randomUUID().toString();
+        return Config.getSessionIdGenerator().generate();
     }
     
     /**
-     * Get the profile from storage.
+     * Get the profile from storage (from the near cache first if defined). The concurrent loads of the same profile are coalesced into a
+     * single call to the store.
      * 
      * @param sessionId
      * @return the user profile
      */
     public static CommonProfile getProfile(final String sessionId) {
         if (sessionId != null) {
-            return (CommonProfile) get(sessionId);
+            final NearCache nearCache = Config.getNearCache();
+            if (nearCache != null) {
+                final CommonProfile profile = (CommonProfile) nearCache.get(sessionId);
+                if (profile != null) {
+                    return profile;
+                }
+            }
+            // the pending writes of a scope are only visible to its thread
+            if (StorageScope.current() != null) {
+                return loadProfile(sessionId, nearCache);
+            }
+            return profileLoads.load(sessionId, new Callable<CommonProfile>() {
+                public CommonProfile call() {
+                    return loadProfile(sessionId, nearCache);
+                }
+            });
         }
         return null;
     }
     
+    private static CommonProfile loadProfile(final String sessionId, final NearCache nearCache) {
+        // a logout during the read must not be undone by the near cache
+        final long generation = nearCache != null ? nearCache.getGeneration(sessionId) : 0;
+        final CommonProfile profile = toProfile(get(sessionId));
+        if (profile != null && nearCache != null) {
+            nearCache.putIfUnchanged(sessionId, profile, generation);
+        }
+        return profile;
+    }
+    
+    /**
+     * Convert a stored value to a user profile.
+     * 
+     * @param value
+     * @return the user profile
+     */
+    static CommonProfile toProfile(final Object value) {
+        if (value instanceof byte[]) {
+            final ProfileCodec codec = Config.getProfileCodec();
+            return (codec != null ? codec : defaultCodec).decode((byte[]) value);
+        }
+        return (CommonProfile) value;
+    }
+    
     /**
-     * Save a user profile in storage.
+     * Convert a user profile to the value to store.
+     * 
+     * @param profile
+     * @return the value to store
+     */
+    static Object fromProfile(final CommonProfile profile) {
+        final ProfileCodec codec = Config.getProfileCodec();
+        if (codec != null && profile != null) {
+            return codec.encode(profile);
+        }
+        return profile;
+    }
+    
+    /**
+     * Save a user profile in storage. The profile is never saved in the session bucket: a concurrent update of the bucket cannot lose
+     * it and the writes of session attributes do not extend its lifetime.
      * 
      * @param sessionId
      * @param profile
      */
     public static void saveProfile(final String sessionId, final CommonProfile profile) {
         if (sessionId != null) {
-            save(sessionId, profile, Config.getProfileTimeout());
+            save(sessionId, fromProfile(profile), Config.getProfileTimeout());
+            final NearCache nearCache = Config.getNearCache();
+            if (nearCache != null) {
+                nearCache.put(sessionId, profile);
+            }
+        }
+    }
+    
+    /**
+     * Whether the expiration of a profile must be refreshed (see {@link Config#setProfileRefreshRatio(double)}).
+     * 
+     * @param lastRefresh the time of the last refresh (or of the login) in milliseconds, <code>null</code> if unknown
+     * @return if the profile must be saved again
+     */
+    public static boolean isRefreshDue(final Long lastRefresh) {
+        final double ratio = Config.getProfileRefreshRatio();
+        if (ratio <= 0) {
+            return false;
+        }
+        return lastRefresh == null || System.currentTimeMillis() - lastRefresh >= (long) (ratio * Config.getProfileTimeout() * 1000L);
+    }
+    
+    /**
+     * Refresh the expiration of the profile of an authenticated user (sliding expiration): the expiration of the saved profile is
+     * extended without blocking (or its session cookie reissued in stateless mode) at most once per
+     * {@link Config#getProfileRefreshRatio()} of the timeout. A profile removed meanwhile (logout) is not recreated. The CAS ticket
+     * recorded at the login (see {@link PlayLogoutHandler}) is extended as well, so that the CAS single logout still finds the
+     * session. The time of the last refresh is kept in the session cookie, so no storage access is needed to skip a refresh.
+     * 
+     * @param session the data of the current session
+     * @param sessionId
+     * @param profile
+     * @return the values to add to the session, empty if no refresh was necessary
+     */
+    public static Map<String, String> refreshProfile(final Map<String, String> session, final String sessionId,
+                                                     final CommonProfile profile) {
+        if (Config.getProfileRefreshRatio() <= 0) {
+            return Collections.emptyMap();
+        }
+        if (StatelessProfileHelper.isEnabled()) {
+            final String token = StatelessProfileHelper.refreshToken(session.get(Constants.PROFILE), profile);
+            return token != null ? Collections.singletonMap(Constants.PROFILE, token) : Collections.<String, String> emptyMap();
+        }
+        if (isRefreshDue(toTime(session.get(Constants.PROFILE_REFRESHED)))) {
+            logger.debug("refresh profile expiration for sessionId : {}", sessionId);
+            // the CAS ticket -> session id mapping lives as long as the profile (CAS single logout)
+            final String ticket = session.get(Constants.CAS_TICKET);
+            // the response is not delayed by the write
+            try {
+                Promise.promise(new Function0<Boolean>() {
+                    public Boolean apply() {
+                        final boolean touched = touchProfile(sessionId);
+                        if (touched && ticket != null) {
+                            touch(ticket);
+                        }
+                        return touched;
+                    }
+                }, Config.getStorageExecutionContext());
+            } catch (final RejectedExecutionException e) {
+                // store saturated: refreshed by a next request
+                logger.debug("refresh rejected for sessionId : {}", sessionId);
+                Config.getMetricsRegistry().increment(MetricsRegistry.STORAGE_REJECTED, 1);
+                return Collections.emptyMap();
+            }
+            return Collections.singletonMap(Constants.PROFILE_REFRESHED, String.valueOf(System.currentTimeMillis()));
         }
+        return Collections.emptyMap();
     }
     
     /**
-     * Remove a user profile from storage.
+     * Extend the expiration of a saved profile to the {@link Config#getProfileTimeout()}, without creating it if it was removed. The
+     * store does it atomically if it's a {@link TouchableSessionStore}; otherwise the profile is read again and only written back if
+     * it still exists (a logout between the read and the write is then still possible).
+     * 
+     * @param sessionId
+     * @return if the profile exists
+     */
+    public static boolean touchProfile(final String sessionId) {
+        if (sessionId == null) {
+            return false;
+        }
+        return touch(sessionId);
+    }
+
+    /**
+     * Extend the expiration of a saved object to the {@link Config#getProfileTimeout()}, without creating it if it was removed.
+     * 
+     * @param key
+     * @return if the object exists
+     */
+    private static boolean touch(final String key) {
+        final long start = System.nanoTime();
+        final String cacheKey = getCacheKey(key);
+        final SessionStore store = Config.getStore();
+        final boolean touched;
+        if (store instanceof TouchableSessionStore) {
+            touched = ((TouchableSessionStore) store).touch(cacheKey, Config.getProfileTimeout());
+        } else {
+            final Object value = store.get(cacheKey);
+            touched = value != null;
+            if (touched) {
+                store.set(cacheKey, value, Config.getProfileTimeout());
+            }
+        }
+        record(MetricsRegistry.STORAGE_SAVE, start);
+        return touched;
+    }
+    
+    private static Long toTime(final String value) {
+        if (value != null) {
+            try {
+                return Long.valueOf(value);
+            } catch (final NumberFormatException e) {
+                logger.debug("invalid refresh time : {}", value);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Remove a user profile from storage (and from the near cache if defined). With session buckets, all the session attributes are
+     * removed as well.
      * 
      * @param sessionId
      */
     public static void removeProfile(final String sessionId) {
         if (sessionId != null) {
-            remove(sessionId);
+            final NearCache nearCache = Config.getNearCache();
+            if (nearCache != null) {
+                nearCache.invalidate(sessionId);
+            }
+            if (Config.isSessionBucket()) {
+                removeAll(Arrays.asList(sessionId, sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET));
+            } else {
+                remove(sessionId);
+            }
         }
     }
     
@@ -110,6 +322,23 @@ public final class StorageHelper {
         return (String) get(sessionId, clientName + Constants.SEPARATOR + Constants.REQUESTED_URL);
     }
     
+    /**
+     * Get a requested url from the session (and remove it) or from storage if it was not saved in the session.
+     * 
+     * @param session
+     * @param sessionId
+     * @param clientName
+     * @return the requested url
+     * @since 1.3.1
+     */
+    public static String getRequestedUrl(final Map<String, String> session, final String sessionId, final String clientName) {
+        final String requestedUrl = session.remove(clientName + Constants.SEPARATOR + Constants.REQUESTED_URL);
+        if (requestedUrl != null) {
+            return requestedUrl;
+        }
+        return getRequestedUrl(sessionId, clientName);
+    }
+    
     /**
      * Save a requested url to storage.
      * 
@@ -121,6 +350,29 @@ public final class StorageHelper {
         save(sessionId, clientName + Constants.SEPARATOR + Constants.REQUESTED_URL, requestedUrl);
     }
     
+    /**
+     * Save a requested url in the session if it's not longer than the {@link Config#getRequestedUrlInSessionMaxLength()} (or than
+     * 1024 characters in stateless mode, where the callback may land on another node), to storage otherwise.
+     * 
+     * @param session
+     * @param sessionId
+     * @param clientName
+     * @param requestedUrl
+     * @since 1.3.1
+     */
+    public static void saveRequestedUrl(final Map<String, String> session, final String sessionId, final String clientName,
+            final String requestedUrl) {
+        int maxLength = Config.getRequestedUrlInSessionMaxLength();
+        if (StatelessProfileHelper.isEnabled()) {
+            maxLength = Math.max(maxLength, STATELESS_REQUESTED_URL_MAX_LENGTH);
+        }
+        if (maxLength > 0 && requestedUrl != null && requestedUrl.length() <= maxLength) {
+            session.put(clientName + Constants.SEPARATOR + Constants.REQUESTED_URL, requestedUrl);
+        } else {
+            saveRequestedUrl(sessionId, clientName, requestedUrl);
+        }
+    }
+    
     /**
      * Get an object from storage.
      * 
@@ -130,6 +382,10 @@ public final class StorageHelper {
      */
     public static Object get(final String sessionId, final String key) {
         if (sessionId != null) {
+            if (Config.isSessionBucket()) {
+                final SessionBucket bucket = getBucket(sessionId);
+                return bucket != null ? bucket.get(key) : null;
+            }
             return get(sessionId + Constants.SEPARATOR + key);
         }
         return null;
@@ -144,7 +400,17 @@ public final class StorageHelper {
      */
     public static void save(final String sessionId, final String key, final Object value) {
         if (sessionId != null) {
-            if (value != null) {
+            if (Config.isSessionBucket()) {
+                SessionBucket bucket = getBucket(sessionId);
+                if (bucket == null) {
+                    if (value == null) {
+                        return;
+                    }
+                    bucket = new SessionBucket();
+                }
+                bucket.put(key, value);
+                saveBucket(sessionId, bucket);
+            } else if (value != null) {
                 save(sessionId + Constants.SEPARATOR + key, value, Config.getSessionTimeout());
             } else {
                 remove(sessionId + Constants.SEPARATOR + key);
@@ -159,37 +425,496 @@ public final class StorageHelper {
      * @param key
      */
     public static void remove(final String sessionId, final String key) {
-        remove(sessionId + Constants.SEPARATOR + key);
+        if (Config.isSessionBucket()) {
+            save(sessionId, key, null);
+        } else {
+            remove(sessionId + Constants.SEPARATOR + key);
+        }
     }
     
     /**
-     * Get an object from storage.
+     * Get the bucket of a session from storage.
+     * 
+     * @param sessionId
+     * @return the bucket or <code>null</code> if none
+     */
+    static SessionBucket getBucket(final String sessionId) {
+        return toBucket(get(sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET));
+    }
+    
+    private static SessionBucket toBucket(final Object value) {
+        return value instanceof SessionBucket ? (SessionBucket) value : null;
+    }
+    
+    /**
+     * Save the bucket of a session in storage: it expires like session attributes. An empty bucket is removed.
+     * <p />
+     * The bucket is read, updated and written back without any version check: with a distributed store, two concurrent updates of the
+     * attributes of the same session may lose one of them (the last write wins). The profile is saved apart and is not affected.
+     * 
+     * @param sessionId
+     * @param bucket
+     */
+    static void saveBucket(final String sessionId, final SessionBucket bucket) {
+        if (bucket.isEmpty()) {
+            removeBucket(sessionId);
+        } else {
+            save(sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET, bucket, Config.getSessionTimeout());
+        }
+    }
+    
+    /**
+     * Remove the bucket of a session (all its attributes) from storage.
+     * 
+     * @param sessionId
+     */
+    static void removeBucket(final String sessionId) {
+        remove(sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET);
+    }
+    
+    /**
+     * Get several objects of a session from storage.
+     * 
+     * @param sessionId
+     * @param keys
+     * @return the objects found by key
+     */
+    public static Map<String, Object> getAll(final String sessionId, final String... keys) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        if (sessionId != null) {
+            if (Config.isSessionBucket()) {
+                final SessionBucket bucket = getBucket(sessionId);
+                if (bucket != null) {
+                    for (final String key : keys) {
+                        final Object value = bucket.get(key);
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                }
+            } else {
+                final String prefix = sessionId + Constants.SEPARATOR;
+                final List<String> sessionKeys = new ArrayList<String>(keys.length);
+                for (final String key : keys) {
+                    sessionKeys.add(prefix + key);
+                }
+                for (final Map.Entry<String, Object> entry : getAll(sessionKeys).entrySet()) {
+                    values.put(entry.getKey().substring(prefix.length()), entry.getValue());
+                }
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Save several objects of a session in storage (a <code>null</code> value removes the object).
+     * 
+     * @param sessionId
+     * @param values
+     */
+    public static void saveAll(final String sessionId, final Map<String, Object> values) {
+        if (sessionId != null && !values.isEmpty()) {
+            if (Config.isSessionBucket()) {
+                SessionBucket bucket = getBucket(sessionId);
+                if (bucket == null) {
+                    bucket = new SessionBucket();
+                }
+                for (final Map.Entry<String, Object> entry : values.entrySet()) {
+                    bucket.put(entry.getKey(), entry.getValue());
+                }
+                saveBucket(sessionId, bucket);
+            } else {
+                final Map<String, Object> saves = new HashMap<String, Object>();
+                final List<String> removals = new ArrayList<String>();
+                for (final Map.Entry<String, Object> entry : values.entrySet()) {
+                    final String key = sessionId + Constants.SEPARATOR + entry.getKey();
+                    if (entry.getValue() != null) {
+                        saves.put(key, entry.getValue());
+                    } else {
+                        removals.add(key);
+                    }
+                }
+                saveAll(saves, Config.getSessionTimeout());
+                removeAll(removals);
+            }
+        }
+    }
+    
+    /**
+     * Remove several objects of a session from storage.
+     * 
+     * @param sessionId
+     * @param keys
+     */
+    public static void removeAll(final String sessionId, final String... keys) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final String key : keys) {
+            values.put(key, null);
+        }
+        saveAll(sessionId, values);
+    }
+    
+    /**
+     * Get an object from storage (read once per {@link StorageScope}).
      * 
      * @param key
      * @return the object
      */
     public static Object get(final String key) {
-        return Cache.get(getCacheKey(key));
+        final long start = System.nanoTime();
+        final String cacheKey = getCacheKey(key);
+        final StorageScope scope = StorageScope.current();
+        final Object value;
+        if (scope != null && scope.contains(cacheKey)) {
+            value = scope.get(cacheKey);
+        } else {
+            value = Config.getStore().get(cacheKey);
+            if (scope != null) {
+                scope.loaded(cacheKey, value);
+            }
+        }
+        recordGet(start, value != null ? 1 : 0, value != null ? 0 : 1);
+        return value;
     }
     
     /**
-     * Save an object in storage.
+     * Get several objects from storage in a single call to the store (read once per {@link StorageScope}).
+     * 
+     * @param keys
+     * @return the objects found by key
+     */
+    public static Map<String, Object> getAll(final Collection<String> keys) {
+        final long start = System.nanoTime();
+        final Map<String, Object> values = new HashMap<String, Object>();
+        final StorageScope scope = StorageScope.current();
+        // keys to read by cache key
+        final Map<String, String> loads = new HashMap<String, String>();
+        for (final String key : keys) {
+            final String cacheKey = getCacheKey(key);
+            if (scope != null && scope.contains(cacheKey)) {
+                final Object value = scope.get(cacheKey);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            } else {
+                loads.put(cacheKey, key);
+            }
+        }
+        if (!loads.isEmpty()) {
+            final Map<String, Object> loaded = Config.getStore().getAll(loads.keySet());
+            for (final Map.Entry<String, String> load : loads.entrySet()) {
+                final Object value = loaded.get(load.getKey());
+                if (scope != null) {
+                    scope.loaded(load.getKey(), value);
+                }
+                if (value != null) {
+                    values.put(load.getValue(), value);
+                }
+            }
+        }
+        recordGet(start, values.size(), keys.size() - values.size());
+        return values;
+    }
+    
+    /**
+     * Save an object in storage (when the {@link StorageScope} is closed if one is opened).
      * 
      * @param key
      * @param value
      * @param timeout
      */
     public static void save(final String key, final Object value, final int timeout) {
-        Cache.set(getCacheKey(key), value, timeout);
+        final long start = System.nanoTime();
+        final String cacheKey = getCacheKey(key);
+        final StorageScope scope = StorageScope.current();
+        if (scope != null) {
+            scope.write(cacheKey, value, timeout);
+        } else {
+            Config.getStore().set(cacheKey, value, timeout);
+        }
+        record(MetricsRegistry.STORAGE_SAVE, start);
+    }
+    
+    /**
+     * Save several objects in storage (in a single call to the store, when the {@link StorageScope} is closed if one is opened).
+     * 
+     * @param values
+     * @param timeout
+     */
+    public static void saveAll(final Map<String, Object> values, final int timeout) {
+        if (values.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final StorageScope scope = StorageScope.current();
+        if (scope != null) {
+            for (final Map.Entry<String, Object> entry : values.entrySet()) {
+                scope.write(getCacheKey(entry.getKey()), entry.getValue(), timeout);
+            }
+        } else {
+            final Map<String, Object> cacheValues = new HashMap<String, Object>();
+            for (final Map.Entry<String, Object> entry : values.entrySet()) {
+                cacheValues.put(getCacheKey(entry.getKey()), entry.getValue());
+            }
+            Config.getStore().setAll(cacheValues, timeout);
+        }
+        record(MetricsRegistry.STORAGE_SAVE, start);
     }
     
     /**
-     * Remove an object from storage.
+     * Remove an object from storage (when the {@link StorageScope} is closed if one is opened).
      * 
      * @param key
      */
     public static void remove(final String key) {
-        Cache.remove(getCacheKey(key));
+        final long start = System.nanoTime();
+        final String cacheKey = getCacheKey(key);
+        final StorageScope scope = StorageScope.current();
+        if (scope != null) {
+            scope.write(cacheKey, null, 0);
+        } else {
+            Config.getStore().remove(cacheKey);
+        }
+        record(MetricsRegistry.STORAGE_REMOVE, start);
+    }
+    
+    /**
+     * Remove several objects from storage (in a single call to the store, when the {@link StorageScope} is closed if one is opened).
+     * 
+     * @param keys
+     */
+    public static void removeAll(final Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final StorageScope scope = StorageScope.current();
+        final List<String> cacheKeys = new ArrayList<String>(keys.size());
+        for (final String key : keys) {
+            cacheKeys.add(getCacheKey(key));
+        }
+        if (scope != null) {
+            for (final String cacheKey : cacheKeys) {
+                scope.write(cacheKey, null, 0);
+            }
+        } else {
+            Config.getStore().removeAll(cacheKeys);
+        }
+        record(MetricsRegistry.STORAGE_REMOVE, start);
+    }
+
+    private static void recordGet(final long start, final int hits, final int misses) {
+        final MetricsRegistry metrics = Config.getMetricsRegistry();
+        metrics.recordTime(MetricsRegistry.STORAGE_GET, System.nanoTime() - start);
+        if (hits > 0) {
+            metrics.increment(MetricsRegistry.STORAGE_HIT, hits);
+        }
+        if (misses > 0) {
+            metrics.increment(MetricsRegistry.STORAGE_MISS, misses);
+        }
+    }
+
+    private static void record(final String operation, final long start) {
+        Config.getMetricsRegistry().recordTime(operation, System.nanoTime() - start);
+    }
+
+    /**
+     * Get the profile from storage (from the near cache first if defined) without blocking.
+     * 
+     * @param sessionId
+     * @return the promise of the user profile
+     */
+    public static Promise<CommonProfile> getProfileAsync(final String sessionId) {
+        if (sessionId == null) {
+            return Promise.pure(null);
+        }
+        final NearCache nearCache = Config.getNearCache();
+        if (nearCache != null) {
+            final CommonProfile profile = (CommonProfile) nearCache.get(sessionId);
+            if (profile != null) {
+                return Promise.pure(profile);
+            }
+        }
+        // the pending writes of a scope are only visible to its thread
+        if (StorageScope.current() != null) {
+            return loadProfileAsync(sessionId, nearCache);
+        }
+        // concurrent loads of the same profile coalesced
+        return profileLoads.loadAsync(sessionId, new Function0<Promise<CommonProfile>>() {
+            public Promise<CommonProfile> apply() {
+                return loadProfileAsync(sessionId, nearCache);
+            }
+        });
+    }
+    
+    private static Promise<CommonProfile> loadProfileAsync(final String sessionId, final NearCache nearCache) {
+        // a logout during the read must not be undone by the near cache
+        final long generation = nearCache != null ? nearCache.getGeneration(sessionId) : 0;
+        return getAsync(sessionId).map(new Function<Object, CommonProfile>() {
+            public CommonProfile apply(final Object value) {
+                final CommonProfile profile = toProfile(value);
+                if (profile != null && nearCache != null) {
+                    nearCache.putIfUnchanged(sessionId, profile, generation);
+                }
+                return profile;
+            }
+        });
+    }
+    
+    /**
+     * Save a user profile in storage without blocking.
+     * 
+     * @param sessionId
+     * @param profile
+     * @return the promise of the completion
+     */
+    public static Promise<Void> saveProfileAsync(final String sessionId, final CommonProfile profile) {
+        if (sessionId == null) {
+            return Promise.pure(null);
+        }
+        final NearCache nearCache = Config.getNearCache();
+        if (nearCache != null) {
+            nearCache.put(sessionId, profile);
+        }
+        return saveAsync(sessionId, fromProfile(profile), Config.getProfileTimeout());
+    }
+    
+    /**
+     * Remove a user profile from storage (and from the near cache if defined) without blocking.
+     * 
+     * @param sessionId
+     * @return the promise of the completion
+     */
+    public static Promise<Void> removeProfileAsync(final String sessionId) {
+        if (sessionId == null) {
+            return Promise.pure(null);
+        }
+        final NearCache nearCache = Config.getNearCache();
+        if (nearCache != null) {
+            nearCache.invalidate(sessionId);
+        }
+        if (Config.isSessionBucket()) {
+            return removeAsync(sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET).flatMap(new Function<Void, Promise<Void>>() {
+                public Promise<Void> apply(final Void result) {
+                    return removeAsync(sessionId);
+                }
+            });
+        }
+        return removeAsync(sessionId);
+    }
+    
+    /**
+     * Get an object of a session from storage without blocking.
+     * 
+     * @param sessionId
+     * @param key
+     * @return the promise of the object
+     */
+    public static Promise<Object> getAsync(final String sessionId, final String key) {
+        if (sessionId == null) {
+            return Promise.pure(null);
+        }
+        if (Config.isSessionBucket()) {
+            return getAsync(sessionId + Constants.SEPARATOR + Constants.SESSION_BUCKET).map(new Function<Object, Object>() {
+                public Object apply(final Object value) {
+                    final SessionBucket bucket = toBucket(value);
+                    return bucket != null ? bucket.get(key) : null;
+                }
+            });
+        }
+        return getAsync(sessionId + Constants.SEPARATOR + key);
+    }
+    
+    /**
+     * Save an object of a session in storage without blocking.
+     * 
+     * @param sessionId
+     * @param key
+     * @param value
+     * @return the promise of the completion
+     */
+    public static Promise<Void> saveAsync(final String sessionId, final String key, final Object value) {
+        if (sessionId == null) {
+            return Promise.pure(null);
+        }
+        if (Config.isSessionBucket()) {
+            // read-modify-write of the bucket
+            return Promise.promise(new Function0<Void>() {
+                public Void apply() {
+                    save(sessionId, key, value);
+                    return null;
+                }
+            }, Config.getStorageExecutionContext());
+        }
+        if (value == null) {
+            return removeAsync(sessionId + Constants.SEPARATOR + key);
+        }
+        return saveAsync(sessionId + Constants.SEPARATOR + key, value, Config.getSessionTimeout());
+    }
+    
+    /**
+     * Get an object from storage without blocking.
+     * 
+     * @param key
+     * @return the promise of the object
+     */
+    public static Promise<Object> getAsync(final String key) {
+        final String cacheKey = getCacheKey(key);
+        final StorageScope scope = StorageScope.current();
+        if (scope != null && scope.contains(cacheKey)) {
+            return Promise.pure(scope.get(cacheKey));
+        }
+        final SessionStore store = Config.getStore();
+        if (store instanceof AsyncSessionStore) {
+            return ((AsyncSessionStore) store).getAsync(cacheKey);
+        }
+        return Promise.promise(new Function0<Object>() {
+            public Object apply() {
+                return store.get(cacheKey);
+            }
+        }, Config.getStorageExecutionContext());
+    }
+    
+    /**
+     * Save an object in storage without blocking.
+     * 
+     * @param key
+     * @param value
+     * @param timeout
+     * @return the promise of the completion
+     */
+    public static Promise<Void> saveAsync(final String key, final Object value, final int timeout) {
+        final String cacheKey = getCacheKey(key);
+        final SessionStore store = Config.getStore();
+        if (store instanceof AsyncSessionStore) {
+            return ((AsyncSessionStore) store).setAsync(cacheKey, value, timeout);
+        }
+        return Promise.promise(new Function0<Void>() {
+            public Void apply() {
+                store.set(cacheKey, value, timeout);
+                return null;
+            }
+        }, Config.getStorageExecutionContext());
+    }
+    
+    /**
+     * Remove an object from storage without blocking.
+     * 
+     * @param key
+     * @return the promise of the completion
+     */
+    public static Promise<Void> removeAsync(final String key) {
+        final String cacheKey = getCacheKey(key);
+        final SessionStore store = Config.getStore();
+        if (store instanceof AsyncSessionStore) {
+            return ((AsyncSessionStore) store).removeAsync(cacheKey);
+        }
+        return Promise.promise(new Function0<Void>() {
+            public Void apply() {
+                store.remove(cacheKey);
+                return null;
+            }
+        }, Config.getStorageExecutionContext());
     }
 
     static String getCacheKey(final String key) {
@@ -0,0 +1,132 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pac4j.play.store.SessionStore;
+
+/**
+ * This class holds what the {@link StorageHelper} reads from and writes to the store during the processing of a request (on the current
+ * thread): each key is read only once per request and the writes are buffered to be sent to the store in a single batch when the
+ * scope is closed (see {@link SessionStore#setAll(Map, int)}).
+ * <p />
+ * Usage: <code>final StorageScope scope = StorageScope.open(); try { ... } finally { scope.close(); }</code>. Scopes can be nested,
+ * only the outer one is effective.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class StorageScope {
+
+    private static final ThreadLocal<StorageScope> current = new ThreadLocal<StorageScope>();
+
+    // values read or written by (cache) key, a null value means the key does not exist or is removed
+    private final Map<String, Object> values = new HashMap<String, Object>();
+
+    // pending writes by (cache) key: the timeout of the saved value or null for a removal
+    private final Map<String, Integer> writes = new LinkedHashMap<String, Integer>();
+
+    private int depth;
+
+    private StorageScope() {
+    }
+
+    /**
+     * Open a scope on the current thread (or reuse the current one).
+     *
+     * @return the scope
+     */
+    public static StorageScope open() {
+        StorageScope scope = current.get();
+        if (scope == null) {
+            scope = new StorageScope();
+            current.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Return the scope opened on the current thread.
+     *
+     * @return the scope or <code>null</code> if none
+     */
+    static StorageScope current() {
+        return current.get();
+    }
+
+    boolean contains(final String key) {
+        return this.values.containsKey(key);
+    }
+
+    Object get(final String key) {
+        return this.values.get(key);
+    }
+
+    void loaded(final String key, final Object value) {
+        this.values.put(key, value);
+    }
+
+    void write(final String key, final Object value, final int timeout) {
+        this.values.put(key, value);
+        this.writes.put(key, value != null ? Integer.valueOf(timeout) : null);
+    }
+
+    /**
+     * Close the scope: the pending writes are sent to the store when the outer scope is closed.
+     */
+    public void close() {
+        if (--this.depth == 0) {
+            current.remove();
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (this.writes.isEmpty()) {
+            return;
+        }
+        final List<String> removals = new ArrayList<String>();
+        final Map<Integer, Map<String, Object>> saves = new HashMap<Integer, Map<String, Object>>();
+        for (final Map.Entry<String, Integer> write : this.writes.entrySet()) {
+            final String key = write.getKey();
+            final Integer timeout = write.getValue();
+            if (timeout == null) {
+                removals.add(key);
+            } else {
+                Map<String, Object> values = saves.get(timeout);
+                if (values == null) {
+                    values = new LinkedHashMap<String, Object>();
+                    saves.put(timeout, values);
+                }
+                values.put(key, this.values.get(key));
+            }
+        }
+        this.writes.clear();
+        final SessionStore store = Config.getStore();
+        if (!removals.isEmpty()) {
+            store.removeAll(removals);
+        }
+        for (final Map.Entry<Integer, Map<String, Object>> save : saves.entrySet()) {
+            store.setAll(save.getValue(), save.getKey().intValue());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+/**
+ * This class encodes/decodes bytes in URL-safe base64 without padding, suitable for cookies and urls.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class Base64Url {
+
+    private final static char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private final static int[] INDEXES = new int[128];
+
+    static {
+        for (int i = 0; i < INDEXES.length; i++) {
+            INDEXES[i] = -1;
+        }
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    /**
+     * Encode bytes.
+     *
+     * @param data
+     * @return the encoded string
+     */
+    public static String encode(final byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    /**
+     * Encode a part of an array of bytes.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return the encoded string
+     */
+    public static String encode(final byte[] data, final int offset, final int length) {
+        final char[] chars = new char[(length * 4 + 2) / 3];
+        final int end = offset + length;
+        int i = offset;
+        int c = 0;
+        while (i + 3 <= end) {
+            final int bits = (data[i++] & 0xff) << 16 | (data[i++] & 0xff) << 8 | (data[i++] & 0xff);
+            chars[c++] = ALPHABET[(bits >>> 18) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 12) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 6) & 0x3f];
+            chars[c++] = ALPHABET[bits & 0x3f];
+        }
+        final int remaining = end - i;
+        if (remaining == 1) {
+            final int bits = (data[i] & 0xff) << 16;
+            chars[c++] = ALPHABET[(bits >>> 18) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            final int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8;
+            chars[c++] = ALPHABET[(bits >>> 18) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 12) & 0x3f];
+            chars[c++] = ALPHABET[(bits >>> 6) & 0x3f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decode a string.
+     *
+     * @param value
+     * @return the decoded bytes or <code>null</code> if the string is not valid
+     */
+    public static byte[] decode(final String value) {
+        final int length = value.length();
+        if (length % 4 == 1) {
+            return null;
+        }
+        final byte[] data = new byte[length * 3 / 4];
+        int bits = 0;
+        int nbBits = 0;
+        int d = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            final int index = ch < 128 ? INDEXES[ch] : -1;
+            if (index < 0) {
+                return null;
+            }
+            bits = (bits << 6) | index;
+            nbBits += 6;
+            if (nbBits >= 8) {
+                nbBits -= 8;
+                data[d++] = (byte) (bits >>> nbBits);
+            }
+        }
+        return data;
+    }
+}
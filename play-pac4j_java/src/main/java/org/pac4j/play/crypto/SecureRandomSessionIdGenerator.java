@@ -0,0 +1,65 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * This generator creates 128-bit random session identifiers encoded in URL-safe base64 (22 characters), default one.
+ * <p />
+ * Each thread has its own <code>SHA1PRNG</code> {@link SecureRandom}, explicitly seeded
+ * once from the platform source: the default <code>NativePRNG</code> shares a global lock across all its instances, so a
+ * per-thread default {@link SecureRandom} would still contend on concurrent sessions creations.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class SecureRandomSessionIdGenerator implements SessionIdGenerator {
+
+    private final static int ID_LENGTH = 16;
+
+    private final static int SEED_LENGTH = 32;
+
+    private final static String ALGORITHM = "SHA1PRNG";
+
+    private final static SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private final ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            return newSecureRandom();
+        }
+    };
+
+    static SecureRandom newSecureRandom() {
+        final byte[] seed = new byte[SEED_LENGTH];
+        SEED_SOURCE.nextBytes(seed);
+        try {
+            final SecureRandom secureRandom = SecureRandom.getInstance(ALGORITHM);
+            secureRandom.setSeed(seed);
+            return secureRandom;
+        } catch (final NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    public String generate() {
+        final byte[] bytes = new byte[ID_LENGTH];
+        this.random.get().nextBytes(bytes);
+        return Base64Url.encode(bytes);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+/**
+ * This interface generates the session identifiers (see {@link org.pac4j.play.Config#setSessionIdGenerator(SessionIdGenerator)}).
+ * Implementations are called concurrently by the request threads.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface SessionIdGenerator {
+
+    /**
+     * Generate a new session identifier, unpredictable and unique.
+     *
+     * @return the session identifier
+     */
+    String generate();
+}
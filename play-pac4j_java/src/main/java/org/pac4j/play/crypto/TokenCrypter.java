@@ -0,0 +1,207 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class encrypts (AES-128/CBC) and signs (HMAC-SHA256) payloads into URL-safe tokens, with an issue time to check their age.
+ * <p />
+ * Several secrets can be defined to rotate keys: the first one is used to create new tokens, all of them are accepted to read tokens.
+ * <p />
+ * Token layout: <code>version (1) | key id (1) | issued at (8) | iv (16) | encrypted payload | mac (32)</code>.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class TokenCrypter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenCrypter.class);
+
+    private final static byte VERSION = 1;
+
+    private final static int IV_LENGTH = 16;
+
+    private final static int MAC_LENGTH = 32;
+
+    private final static int HEADER_LENGTH = 1 + 1 + 8 + IV_LENGTH;
+
+    private final static String CIPHER = "AES/CBC/PKCS5Padding";
+
+    private final static String MAC = "HmacSHA256";
+
+    private final static SecureRandom random = new SecureRandom();
+
+    private final Key[] keys;
+
+    public TokenCrypter(final String... secrets) {
+        if (secrets == null || secrets.length == 0) {
+            throw new TechnicalException("At least one secret is required");
+        }
+        this.keys = new Key[secrets.length];
+        for (int i = 0; i < secrets.length; i++) {
+            this.keys[i] = new Key(secrets[i]);
+        }
+    }
+
+    /**
+     * Encrypt and sign a payload with the current (first) secret.
+     *
+     * @param payload
+     * @param issuedAt in milliseconds
+     * @return the token
+     */
+    public String seal(final byte[] payload, final long issuedAt) {
+        final Key key = this.keys[0];
+        try {
+            final byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            final Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, key.encryptionKey, new IvParameterSpec(iv));
+            final int encryptedLength = cipher.getOutputSize(payload.length);
+            final byte[] token = new byte[HEADER_LENGTH + encryptedLength + MAC_LENGTH];
+            token[0] = VERSION;
+            token[1] = key.id;
+            writeLong(token, 2, issuedAt);
+            System.arraycopy(iv, 0, token, 10, IV_LENGTH);
+            final int written = cipher.doFinal(payload, 0, payload.length, token, HEADER_LENGTH);
+            final int macOffset = HEADER_LENGTH + written;
+            final Mac mac = Mac.getInstance(MAC);
+            mac.init(key.macKey);
+            mac.update(token, 0, macOffset);
+            mac.doFinal(token, macOffset);
+            return Base64Url.encode(token, 0, macOffset + MAC_LENGTH);
+        } catch (final GeneralSecurityException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Check and decrypt a token.
+     *
+     * @param value the token
+     * @param maxAge in milliseconds, <code>0</code> means no limit
+     * @return the payload or <code>null</code> if the token is invalid, signed with an unknown secret or too old
+     */
+    public byte[] open(final String value, final long maxAge) {
+        if (value == null) {
+            return null;
+        }
+        final byte[] token = Base64Url.decode(value);
+        if (token == null || token.length < HEADER_LENGTH + MAC_LENGTH + 16 || token[0] != VERSION) {
+            logger.debug("invalid token");
+            return null;
+        }
+        final long issuedAt = readLong(token, 2);
+        if (maxAge > 0 && System.currentTimeMillis() - issuedAt > maxAge) {
+            logger.debug("expired token, issued at : {}", issuedAt);
+            return null;
+        }
+        final int macOffset = token.length - MAC_LENGTH;
+        try {
+            for (final Key key : this.keys) {
+                if (key.id != token[1]) {
+                    continue;
+                }
+                final Mac mac = Mac.getInstance(MAC);
+                mac.init(key.macKey);
+                mac.update(token, 0, macOffset);
+                final byte[] expected = mac.doFinal();
+                final byte[] actual = new byte[MAC_LENGTH];
+                System.arraycopy(token, macOffset, actual, 0, MAC_LENGTH);
+                if (!MessageDigest.isEqual(expected, actual)) {
+                    continue;
+                }
+                final Cipher cipher = Cipher.getInstance(CIPHER);
+                cipher.init(Cipher.DECRYPT_MODE, key.encryptionKey, new IvParameterSpec(token, 10, IV_LENGTH));
+                return cipher.doFinal(token, HEADER_LENGTH, macOffset - HEADER_LENGTH);
+            }
+        } catch (final GeneralSecurityException e) {
+            logger.debug("cannot decrypt token", e);
+            return null;
+        }
+        logger.debug("no secret matches the token signature");
+        return null;
+    }
+
+    /**
+     * Return the time when a token was issued, without checking it.
+     *
+     * @param value the token
+     * @return the issue time in milliseconds or <code>-1</code> if the token is invalid
+     */
+    public static long getIssuedAt(final String value) {
+        final byte[] token = value != null ? Base64Url.decode(value) : null;
+        if (token == null || token.length < HEADER_LENGTH) {
+            return -1;
+        }
+        return readLong(token, 2);
+    }
+
+    private static void writeLong(final byte[] data, final int offset, final long value) {
+        for (int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(final byte[] data, final int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static final class Key {
+
+        final byte id;
+
+        final SecretKeySpec encryptionKey;
+
+        final SecretKeySpec macKey;
+
+        Key(final String secret) {
+            if (secret == null || secret.length() < 16) {
+                throw new TechnicalException("Secrets must be at least 16 characters long");
+            }
+            try {
+                final Mac derivation = Mac.getInstance(MAC);
+                derivation.init(new SecretKeySpec(secret.getBytes("UTF-8"), MAC));
+                final byte[] encryptionBytes = derivation.doFinal("encryption".getBytes("UTF-8"));
+                final byte[] macBytes = derivation.doFinal("signature".getBytes("UTF-8"));
+                this.encryptionKey = new SecretKeySpec(encryptionBytes, 0, 16, "AES");
+                this.macKey = new SecretKeySpec(macBytes, MAC);
+                this.id = MessageDigest.getInstance("SHA-256").digest(macBytes)[0];
+            } catch (final GeneralSecurityException e) {
+                throw new TechnicalException(e);
+            } catch (final UnsupportedEncodingException e) {
+                throw new TechnicalException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.java;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pac4j.core.client.Client;
+import org.pac4j.core.credentials.Credentials;
+import org.pac4j.core.profile.UserProfile;
+import org.pac4j.play.ClientRegistry;
+import org.pac4j.play.Config;
+
+/**
+ * This class is the compiled form of a {@link RequiresAuthentication} annotation: its values and the resolved client, computed once
+ * per annotation and read by the {@link RequiresAuthenticationAction} on each request.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+final class AuthenticationDescriptor {
+
+    // keyed by the values of the annotations (equals / hashCode): a new instance of the same annotation reuses the descriptor
+    private static final ConcurrentMap<RequiresAuthentication, AuthenticationDescriptor> descriptors = new ConcurrentHashMap<RequiresAuthentication, AuthenticationDescriptor>();
+
+    final String clientName;
+
+    final String targetUrl;
+
+    final boolean isAjax;
+
+    // the registry used to resolve the client
+    final ClientRegistry registry;
+
+    final Client<Credentials, UserProfile> client;
+
+    private AuthenticationDescriptor(final RequiresAuthentication annotation, final ClientRegistry registry) {
+        this.clientName = annotation.clientName();
+        this.targetUrl = annotation.targetUrl();
+        this.isAjax = annotation.isAjax();
+        this.registry = registry;
+        this.client = registry != null ? registry.findClient(this.clientName) : null;
+    }
+
+    /**
+     * Get the descriptor of an annotation (compiled again if the clients have changed).
+     *
+     * @param annotation
+     * @return the descriptor
+     */
+    static AuthenticationDescriptor get(final RequiresAuthentication annotation) {
+        final ClientRegistry registry = Config.getClientRegistry();
+        final AuthenticationDescriptor descriptor = descriptors.get(annotation);
+        if (descriptor != null && descriptor.registry == registry) {
+            return descriptor;
+        }
+        final AuthenticationDescriptor newDescriptor = new AuthenticationDescriptor(annotation, registry);
+        if (descriptor == null) {
+            final AuthenticationDescriptor previous = descriptors.putIfAbsent(annotation, newDescriptor);
+            return previous != null && previous.registry == registry ? previous : newDescriptor;
+        }
+        // clients changed: the last compilation wins
+        descriptors.replace(annotation, descriptor, newDescriptor);
+        return newDescriptor;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticationDescriptor[clientName: " + this.clientName + ", targetUrl: " + this.targetUrl + ", isAjax: " + this.isAjax
+                + ", client: " + this.client + "]";
+    }
+}
@@ -17,15 +17,17 @@ package org.pac4j.play.java;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pac4j.core.client.BaseClient;
-import org.pac4j.core.client.Clients;
 import org.pac4j.core.client.RedirectAction;
 import org.pac4j.core.exception.RequiresHttpAction;
 import org.pac4j.core.exception.TechnicalException;
 import org.pac4j.core.profile.CommonProfile;
 import org.pac4j.play.CallbackController;
+import org.pac4j.play.ClientRegistry;
 import org.pac4j.play.Config;
 import org.pac4j.play.Constants;
+import org.pac4j.play.StatelessProfileHelper;
 import org.pac4j.play.StorageHelper;
+import org.pac4j.play.StorageScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,28 +62,34 @@ public class JavaController extends CallbackController {
      * @return the url of the provider where to redirect the user
      */
     protected static RedirectAction getRedirectAction(final String clientName, final String targetUrl) {
-        // get or create session id
-        String sessionId = StorageHelper.getOrCreationSessionId(session());
-        // requested url to save
-        final String requestedUrlToSave = CallbackController.defaultUrl(targetUrl, request().uri());
-        logger.debug("requestedUrlToSave : {}", requestedUrlToSave);
-        StorageHelper.saveRequestedUrl(sessionId, clientName, requestedUrlToSave);
-        // clients
-        Clients clients = Config.getClients();
-        // no clients -> misconfiguration ?
-        if (clients == null) {
-            throw new TechnicalException("No client defined. Use Config.setClients(clients)");
-        }
-        // redirect to the provider for authentication
-        JavaWebContext webContext = new JavaWebContext(request(), response(), session());
-        RedirectAction action = null;
+        // session attributes read once and saved together
+        final StorageScope scope = StorageScope.open();
         try {
-            action = ((BaseClient) clients.findClient(clientName)).getRedirectAction(webContext, false, false);
-        } catch (RequiresHttpAction e) {
-            // should not happen
+            // get or create session id
+            String sessionId = StorageHelper.getOrCreationSessionId(session());
+            // requested url to save
+            final String requestedUrlToSave = CallbackController.defaultUrl(targetUrl, request().uri());
+            logger.debug("requestedUrlToSave : {}", requestedUrlToSave);
+            StorageHelper.saveRequestedUrl(session(), sessionId, clientName, requestedUrlToSave);
+            // clients indexed by name
+            final ClientRegistry registry = Config.getClientRegistry();
+            // no clients -> misconfiguration ?
+            if (registry == null) {
+                throw new TechnicalException("No client defined. Use Config.setClients(clients)");
+            }
+            // redirect to the provider for authentication
+            JavaWebContext webContext = new JavaWebContext(request(), response(), session());
+            RedirectAction action = null;
+            try {
+                action = ((BaseClient) registry.findClient(clientName)).getRedirectAction(webContext, false, false);
+            } catch (RequiresHttpAction e) {
+                // should not happen
+            }
+            logger.debug("redirectAction : {}", action);
+            return action;
+        } finally {
+            scope.close();
         }
-        logger.debug("redirectAction : {}", action);
-        return action;
     }
 
     /**
@@ -90,6 +98,17 @@ public class JavaController extends CallbackController {
      * @return the user profile if the user is authenticated or <code>null</code> otherwise
      */
     protected static CommonProfile getUserProfile() {
+        // profile already retrieved by the RequiresAuthenticationAction
+        final Object authenticatedProfile = ctx().args.get(Constants.PROFILE);
+        if (authenticatedProfile instanceof CommonProfile) {
+            return (CommonProfile) authenticatedProfile;
+        }
+        // profile in session cookie
+        if (StatelessProfileHelper.isEnabled()) {
+            final CommonProfile profile = StatelessProfileHelper.getProfile(session());
+            logger.debug("profile : {}", profile);
+            return profile;
+        }
         // get the session id
         final String sessionId = session(Constants.SESSION_ID);
         logger.debug("sessionId for profile : {}", sessionId);
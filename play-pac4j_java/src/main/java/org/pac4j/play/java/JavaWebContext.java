@@ -15,6 +15,7 @@
  */
 package org.pac4j.play.java;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,6 +45,17 @@ public class JavaWebContext extends BaseResponseContext {
     // play api does not expose the scheme, just return http for now
     private String scheme = "http";
 
+    // computed once per request
+    private Map<String, String[]> formParameters;
+
+    private boolean formParsed;
+
+    private Map<String, String[]> parameters;
+
+    private String serverName;
+
+    private int serverPort;
+
     public JavaWebContext(final Request request, final Response response, final Session session) {
         this.request = request;
         this.response = response;
@@ -63,8 +75,14 @@ public class JavaWebContext extends BaseResponseContext {
     }
 
     public String getRequestParameter(final String name) {
-        final Map<String, String[]> parameters = getRequestParameters();
-        final String[] values = parameters.get(name);
+        // url parameters first (they override form parameters), no merged map
+        String[] values = this.request.queryString().get(name);
+        if (values == null) {
+            final Map<String, String[]> formParameters = getFormParameters();
+            if (formParameters != null) {
+                values = formParameters.get(name);
+            }
+        }
         if (values != null && values.length > 0) {
             return values[0];
         }
@@ -72,16 +90,27 @@ public class JavaWebContext extends BaseResponseContext {
     }
 
     public Map<String, String[]> getRequestParameters() {
-        final Map<String, String[]> formParameters = this.request.body().asFormUrlEncoded();
-        final Map<String, String[]> urlParameters = this.request.queryString();
-        final Map<String, String[]> parameters = new HashMap<String, String[]>();
-        if (formParameters != null) {
-            parameters.putAll(formParameters);
+        if (this.parameters == null) {
+            final Map<String, String[]> formParameters = getFormParameters();
+            final Map<String, String[]> urlParameters = this.request.queryString();
+            final Map<String, String[]> parameters = new HashMap<String, String[]>();
+            if (formParameters != null) {
+                parameters.putAll(formParameters);
+            }
+            if (urlParameters != null) {
+                parameters.putAll(urlParameters);
+            }
+            this.parameters = Collections.unmodifiableMap(parameters);
         }
-        if (urlParameters != null) {
-            parameters.putAll(urlParameters);
+        return this.parameters;
+    }
+
+    private Map<String, String[]> getFormParameters() {
+        if (!this.formParsed) {
+            this.formParameters = this.request.body().asFormUrlEncoded();
+            this.formParsed = true;
         }
-        return parameters;
+        return this.formParameters;
     }
 
     public Object getSessionAttribute(final String key) {
@@ -109,14 +138,28 @@ public class JavaWebContext extends BaseResponseContext {
     }
 
     public String getServerName() {
-        String[] split = request.host().split(":");
-        return split[0];
+        parseHost();
+        return this.serverName;
     }
 
     public int getServerPort() {
-        String[] split = request.host().split(":");
-        String portStr = (split.length > 1) ? split[1] : "80";
-        return Integer.valueOf(portStr);
+        parseHost();
+        return this.serverPort;
+    }
+
+    private void parseHost() {
+        if (this.serverName == null) {
+            final String host = this.request.host();
+            final int colon = host.lastIndexOf(':');
+            // no port or IPv6 address without port
+            if (colon < 0 || host.indexOf(']', colon) >= 0) {
+                this.serverPort = 80;
+                this.serverName = host;
+            } else {
+                this.serverPort = Integer.parseInt(host.substring(colon + 1));
+                this.serverName = host.substring(0, colon);
+            }
+        }
     }
 
     public String getScheme() {
@@ -15,9 +15,8 @@
  */
 package org.pac4j.play.java;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.pac4j.core.client.BaseClient;
 import org.pac4j.core.client.Client;
@@ -31,10 +30,14 @@ import org.pac4j.core.profile.UserProfile;
 import org.pac4j.play.CallbackController;
 import org.pac4j.play.Config;
 import org.pac4j.play.Constants;
+import org.pac4j.play.StatelessProfileHelper;
 import org.pac4j.play.StorageHelper;
+import org.pac4j.play.StorageScope;
+import org.pac4j.play.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import play.libs.F.Function;
 import play.libs.F.Function0;
 import play.libs.F.Promise;
 import play.mvc.Action;
@@ -48,63 +51,79 @@ import play.mvc.SimpleResult;
  * @author Jerome Leleu
  * @since 1.0.0
  */
-public final class RequiresAuthenticationAction extends Action<Result> {
+public final class RequiresAuthenticationAction extends Action<RequiresAuthentication> {
 
     private static final Logger logger = LoggerFactory.getLogger(RequiresAuthenticationAction.class);
 
-    private static final Method clientNameMethod;
-
-    private static final Method targetUrlMethod;
-
-    private static final Method isAjaxMethod;
-
-    static {
-        try {
-            clientNameMethod = RequiresAuthentication.class.getDeclaredMethod(Constants.CLIENT_NAME);
-            targetUrlMethod = RequiresAuthentication.class.getDeclaredMethod(Constants.TARGET_URL);
-            isAjaxMethod = RequiresAuthentication.class.getDeclaredMethod(Constants.IS_AJAX);
-        } catch (final SecurityException e) {
-            throw new RuntimeException(e);
-        } catch (final NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<Result> call(final Context context) throws Throwable {
-        final InvocationHandler invocationHandler = Proxy.getInvocationHandler(this.configuration);
-        final String clientName = (String) invocationHandler.invoke(this.configuration, clientNameMethod, null);
-        logger.debug("clientName : {}", clientName);
-        final String targetUrl = (String) invocationHandler.invoke(this.configuration, targetUrlMethod, null);
-        logger.debug("targetUrl : {}", targetUrl);
-        final Boolean isAjax = (Boolean) invocationHandler.invoke(this.configuration, isAjaxMethod, null);
-        logger.debug("isAjax : {}", isAjax);
+        // annotation values and client computed once
+        final AuthenticationDescriptor descriptor = AuthenticationDescriptor.get(this.configuration);
+        logger.debug("descriptor : {}", descriptor);
+        // a new session has no profile yet: no storage access for anonymous users
+        final boolean newSession = context.session().get(Constants.SESSION_ID) == null;
         // get or create session id
         final String sessionId = StorageHelper.getOrCreationSessionId(context.session());
         logger.debug("sessionId : {}", sessionId);
-        final CommonProfile profile = StorageHelper.getProfile(sessionId);
-        logger.debug("profile : {}", profile);
-        // has a profile -> access resource
-        if (profile != null) {
-            return this.delegate.call(context);
+        final Promise<CommonProfile> profilePromise;
+        if (StatelessProfileHelper.isEnabled()) {
+            // profile in session cookie: no storage access
+            profilePromise = Promise.pure(StatelessProfileHelper.getProfile(context.session()));
+        } else if (newSession) {
+            profilePromise = Promise.<CommonProfile> pure(null);
+        } else {
+            // the request thread is not blocked by the store
+            try {
+                profilePromise = StorageHelper.getProfileAsync(sessionId);
+            } catch (final RejectedExecutionException e) {
+                return Promise.pure(CallbackController.storageUnavailable(e));
+            }
         }
+        return profilePromise.flatMap(new Function<CommonProfile, Promise<Result>>() {
+            public Promise<Result> apply(final CommonProfile profile) throws Throwable {
+                logger.debug("profile : {}", profile);
+                // has a profile -> access resource
+                if (profile != null) {
+                    Config.getMetricsRegistry().increment(MetricsRegistry.AUTHENTICATED, 1);
+                    // sliding expiration
+                    final Map<String, String> refreshed = StorageHelper.refreshProfile(context.session(), sessionId, profile);
+                    for (final Map.Entry<String, String> entry : refreshed.entrySet()) {
+                        context.session().put(entry.getKey(), entry.getValue());
+                    }
+                    // available to the controller without any other storage access
+                    context.args.put(Constants.PROFILE, profile);
+                    return delegate.call(context);
+                }
+                Config.getMetricsRegistry().increment(MetricsRegistry.REDIRECTED, 1);
+                return redirectToClient(context, sessionId, descriptor);
+            }
+        });
+    }
 
-        // requested url to save
-        final String requestedUrlToSave = CallbackController.defaultUrl(targetUrl, context.request().uri());
-        logger.debug("requestedUrlToSave : {}", requestedUrlToSave);
-        StorageHelper.saveRequestedUrl(sessionId, clientName, requestedUrlToSave);
-        // get client
-        final Client<Credentials, UserProfile> client = Config.getClients().findClient(clientName);
-        logger.debug("client : {}", client);
-        Promise<Result> promise = Promise.promise(new Function0<Result>() {
+    /**
+     * This method saves the requested url and starts the authentication process for the client (on the client execution context as
+     * the client may call the provider and save session attributes).
+     */
+    private Promise<Result> redirectToClient(final Context context, final String sessionId, final AuthenticationDescriptor descriptor) {
+        // client resolved once
+        final Client<Credentials, UserProfile> client = descriptor.client;
+        if (client == null) {
+            throw new TechnicalException("No client defined. Use Config.setClients(clients)");
+        }
+        return CallbackController.promiseForClient(descriptor.clientName, context.response(), new Function0<Result>() {
             @SuppressWarnings("rawtypes")
             public Result apply() {
+                // the requested url and the client session attributes are saved together
+                final StorageScope scope = StorageScope.open();
                 try {
+                    // requested url to save
+                    final String requestedUrlToSave = CallbackController.defaultUrl(descriptor.targetUrl,
+                            context.request().uri());
+                    logger.debug("requestedUrlToSave : {}", requestedUrlToSave);
+                    StorageHelper.saveRequestedUrl(context.session(), sessionId, descriptor.clientName, requestedUrlToSave);
                     // and compute redirection url
-                    JavaWebContext webContext = new JavaWebContext(context.request(), context.response(), context
-                            .session());
-                    final RedirectAction action = ((BaseClient) client).getRedirectAction(webContext, true, isAjax);
+                    JavaWebContext webContext = new JavaWebContext(context.request(), context.response(), context.session());
+                    final RedirectAction action = ((BaseClient) client).getRedirectAction(webContext, true, descriptor.isAjax);
                     logger.debug("redirectAction : {}", action);
                     return convertToPromise(action);
                 } catch (final RequiresHttpAction e) {
@@ -119,10 +138,11 @@ public final class RequiresAuthenticationAction extends Action<Result> {
                     final String message = "Unsupported HTTP action : " + code;
                     logger.error(message);
                     throw new TechnicalException(message);
+                } finally {
+                    scope.close();
                 }
             }
         });
-        return promise;
     }
 
     private Result convertToPromise(RedirectAction action) {
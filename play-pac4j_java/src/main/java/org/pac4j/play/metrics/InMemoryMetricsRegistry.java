@@ -0,0 +1,127 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This metrics registry keeps the counters and the {@link LatencyHistogram} in memory, without lock on the recording path. They can be
+ * read at any time, to be exported to a monitoring system for example.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    public void increment(final String name, final long delta) {
+        AtomicLong counter = this.counters.get(name);
+        if (counter == null) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = this.counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    public void recordTime(final String name, final long nanos) {
+        LatencyHistogram histogram = this.histograms.get(name);
+        if (histogram == null) {
+            final LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = this.histograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Get the value of a counter.
+     * 
+     * @param name
+     * @return the value, 0 if never incremented
+     */
+    public long getCount(final String name) {
+        final AtomicLong counter = this.counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Get the histogram of an operation.
+     * 
+     * @param name
+     * @return the histogram or <code>null</code> if nothing is recorded
+     */
+    public LatencyHistogram getHistogram(final String name) {
+        return this.histograms.get(name);
+    }
+
+    /**
+     * Get the ratio of the keys found in storage.
+     * 
+     * @return the hit ratio between 0 and 1, 0 if nothing is read
+     */
+    public double getStorageHitRatio() {
+        final long hits = getCount(STORAGE_HIT);
+        final long total = hits + getCount(STORAGE_MISS);
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get a snapshot of the counters.
+     * 
+     * @return the values by name
+     */
+    public Map<String, Long> getCounters() {
+        final Map<String, Long> values = new HashMap<String, Long>();
+        for (final Map.Entry<String, AtomicLong> entry : this.counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    /**
+     * Get the histograms.
+     * 
+     * @return the histograms by name
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new HashMap<String, LatencyHistogram>(this.histograms);
+    }
+
+    /**
+     * Reset all metrics.
+     */
+    public void clear() {
+        this.counters.clear();
+        this.histograms.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryMetricsRegistry[counters=" + getCounters() + ", histograms=" + this.histograms + "]";
+    }
+}
@@ -0,0 +1,115 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a lock-free histogram of durations: each duration is counted in the bucket of its power of two (in nanoseconds), so
+ * percentiles are approximated by the upper bound of their bucket (within a factor of 2).
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     * 
+     * @param nanos
+     */
+    public void record(final long nanos) {
+        final long value = nanos < 0 ? 0 : nanos;
+        this.buckets.incrementAndGet(bucket(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value)) {
+            current = this.max.get();
+        }
+    }
+
+    private static int bucket(final long nanos) {
+        return nanos == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Get the mean duration.
+     * 
+     * @param unit
+     * @return the mean duration or 0 if nothing is recorded
+     */
+    public double getMean(final TimeUnit unit) {
+        final long n = this.count.get();
+        return n == 0 ? 0 : (double) unit.convert(this.total.get(), TimeUnit.NANOSECONDS) / n;
+    }
+
+    public long getMax(final TimeUnit unit) {
+        return unit.convert(this.max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get an approximate percentile of the durations.
+     * 
+     * @param percentile between 0 and 100
+     * @param unit
+     * @return the upper bound of the bucket of the percentile, 0 if nothing is recorded
+     */
+    public long getPercentile(final double percentile, final TimeUnit unit) {
+        long n = 0;
+        final long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // bucket i holds [2^i, 2^(i+1))
+                final long upper = i >= BUCKETS - 2 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return unit.convert(Math.min(upper, this.max.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return getMax(unit);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + getCount() + ", mean=" + getMean(TimeUnit.MICROSECONDS) + "us, p99="
+            + getPercentile(99, TimeUnit.MICROSECONDS) + "us, max=" + getMax(TimeUnit.MICROSECONDS) + "us]";
+    }
+}
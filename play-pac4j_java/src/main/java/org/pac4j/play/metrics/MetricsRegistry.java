@@ -0,0 +1,94 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.metrics;
+
+/**
+ * This interface records the metrics of the authentication, callback, storage and logout operations (see
+ * {@link org.pac4j.play.Config#setMetricsRegistry(MetricsRegistry)}). Implementations are called on the request threads: they must be
+ * thread-safe and must not block.
+ * 
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface MetricsRegistry {
+
+    /** Requests to a protected action by an authenticated user. */
+    String AUTHENTICATED = "authentication.authenticated";
+
+    /** Requests to a protected action redirected to an identity provider. */
+    String REDIRECTED = "authentication.redirected";
+
+    /** Latency of the callbacks, followed by the client name. */
+    String CALLBACK = "callback.";
+
+    /** Latency of the reads from storage. */
+    String STORAGE_GET = "storage.get";
+
+    /** Latency of the saves in storage. */
+    String STORAGE_SAVE = "storage.save";
+
+    /** Latency of the removals from storage. */
+    String STORAGE_REMOVE = "storage.remove";
+
+    /** Keys found in storage. */
+    String STORAGE_HIT = "storage.hit";
+
+    /** Keys not found in storage. */
+    String STORAGE_MISS = "storage.miss";
+
+    /** Storage calls rejected because the storage execution context is saturated. */
+    String STORAGE_REJECTED = "storage.rejected";
+
+    /** Callbacks and redirections rejected by the admission limits, followed by the client name. */
+    String ADMISSION_REJECTED = "admission.rejected.";
+
+    /** Sessions destroyed by a logout request. */
+    String LOGOUT = "logout";
+
+    /** Duration of the snapshots of the store. */
+    String SNAPSHOT_SAVE = "snapshot.save";
+
+    /** Duration of the restores of the store. */
+    String SNAPSHOT_RESTORE = "snapshot.restore";
+
+    /** Bytes written by the snapshots of the store. */
+    String SNAPSHOT_SAVE_BYTES = "snapshot.save.bytes";
+
+    /** Entries written by the snapshots of the store. */
+    String SNAPSHOT_SAVE_ENTRIES = "snapshot.save.entries";
+
+    /** Bytes read by the restores of the store. */
+    String SNAPSHOT_RESTORE_BYTES = "snapshot.restore.bytes";
+
+    /** Entries restored in the store. */
+    String SNAPSHOT_RESTORE_ENTRIES = "snapshot.restore.entries";
+
+    /**
+     * Increment a counter.
+     * 
+     * @param name
+     * @param delta
+     */
+    void increment(String name, long delta);
+
+    /**
+     * Record the duration of an operation.
+     * 
+     * @param name
+     * @param nanos
+     */
+    void recordTime(String name, long nanos);
+}
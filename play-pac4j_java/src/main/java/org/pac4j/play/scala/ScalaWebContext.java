@@ -39,6 +39,13 @@ public class ScalaWebContext<C> implements WebContext {
 
     private final Session session;
 
+    // computed once per request
+    private Option<scala.collection.immutable.Map<String, Seq<String>>> formParameters;
+
+    private String serverName;
+
+    private int serverPort;
+
     public ScalaWebContext(final Request<C> request, final Session session) {
         this.request = request;
         this.session = session;
@@ -58,9 +65,8 @@ public class ScalaWebContext<C> implements WebContext {
         if (values.isDefined()) {
             value = values.get().head();
         }
-        if (value == null && this.request instanceof Request) {
-            final Option<scala.collection.immutable.Map<String, Seq<String>>> formParameters = ((Request<AnyContent>) (this.request))
-                    .body().asFormUrlEncoded();
+        if (value == null) {
+            final Option<scala.collection.immutable.Map<String, Seq<String>>> formParameters = getFormParameters();
             if (formParameters.isDefined()) {
                 values = formParameters.get().get(name);
                 if (values.isDefined()) {
@@ -71,6 +77,14 @@ public class ScalaWebContext<C> implements WebContext {
         return value;
     }
 
+    @SuppressWarnings("unchecked")
+    private Option<scala.collection.immutable.Map<String, Seq<String>>> getFormParameters() {
+        if (this.formParameters == null) {
+            this.formParameters = ((Request<AnyContent>) (this.request)).body().asFormUrlEncoded();
+        }
+        return this.formParameters;
+    }
+
     public Map<String, String[]> getRequestParameters() {
         throw new IllegalArgumentException("getRequestParameters not implemented");
     }
@@ -104,14 +118,28 @@ public class ScalaWebContext<C> implements WebContext {
     }
 
     public String getServerName() {
-        String[] split = this.request.host().split(":");
-        return split[0];
+        parseHost();
+        return this.serverName;
     }
 
     public int getServerPort() {
-        String[] split = this.request.host().split(":");
-        String portStr = (split.length > 1) ? split[1] : "80";
-        return Integer.valueOf(portStr);
+        parseHost();
+        return this.serverPort;
+    }
+
+    private void parseHost() {
+        if (this.serverName == null) {
+            final String host = this.request.host();
+            final int colon = host.lastIndexOf(':');
+            // no port or IPv6 address without port
+            if (colon < 0 || host.indexOf(']', colon) >= 0) {
+                this.serverPort = 80;
+                this.serverName = host;
+            } else {
+                this.serverPort = Integer.parseInt(host.substring(colon + 1));
+                this.serverName = host.substring(0, colon);
+            }
+        }
     }
 
     public String getScheme() {
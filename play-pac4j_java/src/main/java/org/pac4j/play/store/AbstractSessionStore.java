@@ -0,0 +1,52 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class implements the batch methods of the {@link SessionStore} by calling the single key methods for each key.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public abstract class AbstractSessionStore implements SessionStore {
+
+    public Map<String, Object> getAll(final Collection<String> keys) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final String key : keys) {
+            final Object value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    public void setAll(final Map<String, Object> values, final int timeout) {
+        for (final Map.Entry<String, Object> entry : values.entrySet()) {
+            set(entry.getKey(), entry.getValue(), timeout);
+        }
+    }
+
+    public void removeAll(final Collection<String> keys) {
+        for (final String key : keys) {
+            remove(key);
+        }
+    }
+}
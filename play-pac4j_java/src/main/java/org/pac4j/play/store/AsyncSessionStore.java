@@ -0,0 +1,55 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import play.libs.F.Promise;
+
+/**
+ * This interface can be implemented by a {@link SessionStore} having a non-blocking client: the asynchronous methods of the
+ * {@link org.pac4j.play.StorageHelper} then use it directly instead of calling the blocking methods on the
+ * {@link org.pac4j.play.Config#getStorageExecutionContext()}.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface AsyncSessionStore extends SessionStore {
+
+    /**
+     * Get an object from the store.
+     *
+     * @param key
+     * @return the promise of the object or of <code>null</code> if not found or expired
+     */
+    Promise<Object> getAsync(String key);
+
+    /**
+     * Save an object in the store.
+     *
+     * @param key
+     * @param value
+     * @param timeout in seconds, <code>0</code> means no expiration
+     * @return the promise of the completion
+     */
+    Promise<Void> setAsync(String key, Object value, int timeout);
+
+    /**
+     * Remove an object from the store.
+     *
+     * @param key
+     * @return the promise of the completion
+     */
+    Promise<Void> removeAsync(String key);
+}
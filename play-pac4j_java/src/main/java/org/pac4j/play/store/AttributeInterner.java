@@ -0,0 +1,192 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pac4j.core.profile.UserProfile;
+
+/**
+ * This class is a pool shared by the profiles kept in memory (see {@link InMemoryStore#setInterner(AttributeInterner)}): the attribute
+ * names, the roles and the short string values (locale, issuer...) of all the profiles reference the same instances instead of one copy
+ * per profile.
+ * <p />
+ * The pool is bounded: when it's full, new strings are not pooled anymore. The memory saved is estimated from the size of the duplicate
+ * strings released (64-bit JVM with compressed references).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class AttributeInterner {
+
+    public final static int DEFAULT_MAX_SIZE = 10000;
+
+    public final static int DEFAULT_MAX_VALUE_LENGTH = 64;
+
+    private final ConcurrentMap<String, String> pool = new ConcurrentHashMap<String, String>();
+
+    private final int maxSize;
+
+    private final int maxValueLength;
+
+    private final AtomicLong profileCount = new AtomicLong();
+
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    public AttributeInterner() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Build an interner.
+     *
+     * @param maxSize the maximum number of pooled strings
+     * @param maxValueLength the maximum length of the pooled attribute values (longer values are rarely shared)
+     */
+    public AttributeInterner(final int maxSize, final int maxValueLength) {
+        if (maxSize <= 0 || maxValueLength < 0) {
+            throw new IllegalArgumentException("maxSize must be positive and maxValueLength not negative");
+        }
+        this.maxSize = maxSize;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Return a copy of a profile whose attribute names, roles and short string values are the pooled instances. The given profile, which
+     * the caller and other threads may hold, is never modified: the copy is a new instance to publish (in a store for example). A
+     * profile already interned is returned as is.
+     *
+     * @param profile
+     * @return the interned profile
+     */
+    public <U extends UserProfile> U intern(final U profile) {
+        final Map<String, Object> attributes = ProfileAttributes.getAttributes(profile);
+        final List<String> roles = ProfileAttributes.getRoles(profile);
+        if (isInterned(attributes, roles)) {
+            return profile;
+        }
+        long saved = 0;
+        final Map<String, Object> newAttributes = new HashMap<String, Object>();
+        for (final Map.Entry<String, Object> entry : attributes.entrySet()) {
+            final String name = entry.getKey();
+            final String pooledName = intern(name);
+            saved += savedBytes(name, pooledName);
+            final Object value = entry.getValue();
+            if (value instanceof String && ((String) value).length() <= this.maxValueLength) {
+                final String pooledValue = intern((String) value);
+                saved += savedBytes((String) value, pooledValue);
+                newAttributes.put(pooledName, pooledValue);
+            } else {
+                newAttributes.put(pooledName, value);
+            }
+        }
+        final List<String> newRoles = new ArrayList<String>(roles.size());
+        for (final String role : roles) {
+            final String pooledRole = intern(role);
+            saved += savedBytes(role, pooledRole);
+            newRoles.add(pooledRole);
+        }
+        final U interned = ProfileAttributes.copy(profile, newAttributes, newRoles);
+        this.profileCount.incrementAndGet();
+        this.savedBytes.addAndGet(saved);
+        return interned;
+    }
+
+    private boolean isInterned(final Map<String, Object> attributes, final List<String> roles) {
+        for (final Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (!isPooled(entry.getKey())) {
+                return false;
+            }
+            final Object value = entry.getValue();
+            if (value instanceof String && ((String) value).length() <= this.maxValueLength && !isPooled((String) value)) {
+                return false;
+            }
+        }
+        for (final String role : roles) {
+            if (!isPooled(role)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // pooled or not poolable anymore
+    private boolean isPooled(final String s) {
+        final String pooled = this.pool.get(s);
+        return pooled == s || (pooled == null && this.pool.size() >= this.maxSize);
+    }
+
+    private String intern(final String s) {
+        if (s == null) {
+            return null;
+        }
+        final String pooled = this.pool.get(s);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (this.pool.size() >= this.maxSize) {
+            return s;
+        }
+        final String previous = this.pool.putIfAbsent(s, s);
+        return previous != null ? previous : s;
+    }
+
+    private static long savedBytes(final String s, final String pooled) {
+        if (s == null || s == pooled) {
+            return 0;
+        }
+        // object header, hash and reference to the array + array header and chars
+        return 24 + align(16 + 2L * s.length());
+    }
+
+    private static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+
+    public int size() {
+        return this.pool.size();
+    }
+
+    public long getProfileCount() {
+        return this.profileCount.get();
+    }
+
+    public long getSavedBytes() {
+        return this.savedBytes.get();
+    }
+
+    /**
+     * Return the average memory saved per interned profile.
+     *
+     * @return the number of bytes
+     */
+    public long getSavedBytesPerProfile() {
+        final long profiles = getProfileCount();
+        return profiles > 0 ? getSavedBytes() / profiles : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeInterner[size=" + size() + ", profiles=" + getProfileCount() + ", savedBytesPerProfile="
+                + getSavedBytesPerProfile() + "]";
+    }
+}
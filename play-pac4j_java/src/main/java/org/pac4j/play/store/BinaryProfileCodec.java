@@ -0,0 +1,451 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This codec writes user profiles in a compact binary format:
+ * <ul>
+ * <li>a header: magic byte, format version and flags</li>
+ * <li>the profile class, identifier, remembered flag, roles and permissions</li>
+ * <li>the attributes: well-known attribute names are written as an index in a dictionary and common value types (strings, numbers,
+ * booleans, dates, locales, enums, lists) have a dedicated encoding, other values fall back to the Java serialization.</li>
+ * </ul>
+ * The body is deflated when it's larger than a threshold (512 bytes by default) and compression actually saves space.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class BinaryProfileCodec implements ProfileCodec {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryProfileCodec.class);
+
+    public final static int DEFAULT_COMPRESSION_THRESHOLD = 512;
+
+    private final static byte MAGIC = (byte) 0xB7;
+
+    private final static byte VERSION = 1;
+
+    private final static int HEADER_LENGTH = 3;
+
+    private final static int FLAG_COMPRESSED = 1;
+
+    private final static int TAG_NULL = 0;
+    private final static int TAG_STRING = 1;
+    private final static int TAG_INTEGER = 2;
+    private final static int TAG_LONG = 3;
+    private final static int TAG_TRUE = 4;
+    private final static int TAG_FALSE = 5;
+    private final static int TAG_DOUBLE = 6;
+    private final static int TAG_LOCALE = 7;
+    private final static int TAG_DATE = 8;
+    private final static int TAG_LIST = 9;
+    private final static int TAG_ENUM = 10;
+    private final static int TAG_SERIALIZED = 11;
+
+    // dictionary of the format version 1: entries can only be appended along with a new version
+    private final static String[] NAMES = { "email", "first_name", "family_name", "display_name", "username", "gender", "locale",
+        "picture_url", "profile_url", "location", "access_token", "access_token_secret", "refresh_token", "expires", "expires_in",
+        "token_type", "scope", "id", "name", "login", "link", "url", "bio", "birthday", "timezone", "time_zone", "updated_time",
+        "verified", "verified_email", "given_name", "lang", "language", "description", "screen_name", "avatar_url", "html_url",
+        "company", "blog", "created_at", "type", "followers_count", "friends_count", "picture", "uid", "nickname", "country",
+        "city", "phone", "website", "hd", "authenticationMethod", "successfulAuthenticationHandlers", "isFromNewLogin",
+        "longTermAuthenticationRequestTokenUsed", "samlAuthenticationStatementAuthMethod" };
+
+    private final static Map<String, Integer> NAME_INDEXES = new HashMap<String, Integer>();
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAME_INDEXES.put(NAMES[i], i + 1);
+        }
+    }
+
+    private final int compressionThreshold;
+
+    public BinaryProfileCodec() {
+        this(DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * Build a codec.
+     *
+     * @param compressionThreshold the body size (in bytes) from which compression is tried, <code>Integer.MAX_VALUE</code> disables it
+     */
+    public BinaryProfileCodec(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public byte[] encode(final CommonProfile profile) {
+        final Output out = new Output();
+        out.skip(HEADER_LENGTH);
+        out.writeString(profile.getClass().getName());
+        out.writeString(profile.getId());
+        out.write(profile.isRemembered() ? 1 : 0);
+        out.writeStrings(profile.getRoles());
+        out.writeStrings(profile.getPermissions());
+        final Map<String, Object> attributes = profile.getAttributes();
+        out.writeVarInt(attributes.size());
+        for (final Map.Entry<String, Object> entry : attributes.entrySet()) {
+            final Integer index = NAME_INDEXES.get(entry.getKey());
+            if (index != null) {
+                out.writeVarInt(index);
+            } else {
+                out.writeVarInt(0);
+                out.writeString(entry.getKey());
+            }
+            out.writeValue(entry.getValue());
+        }
+        final byte[] data = out.getBuffer();
+        final int length = out.size();
+        int flags = 0;
+        byte[] result = null;
+        if (length - HEADER_LENGTH >= this.compressionThreshold) {
+            result = deflate(data, length);
+            if (result != null) {
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+        if (result == null) {
+            result = new byte[length];
+            System.arraycopy(data, 0, result, 0, length);
+        }
+        result[0] = MAGIC;
+        result[1] = VERSION;
+        result[2] = (byte) flags;
+        return result;
+    }
+
+    public CommonProfile decode(final byte[] data) {
+        if (data == null || data.length < HEADER_LENGTH || data[0] != MAGIC) {
+            logger.error("invalid profile data");
+            return null;
+        }
+        if (data[1] != VERSION) {
+            logger.error("unsupported profile format version : {}", data[1]);
+            return null;
+        }
+        try {
+            final Input in;
+            if ((data[2] & FLAG_COMPRESSED) != 0) {
+                in = new Input(inflate(data));
+            } else {
+                in = new Input(data, HEADER_LENGTH);
+            }
+            final CommonProfile profile = (CommonProfile) loadClass(in.readString()).newInstance();
+            profile.setId(in.readString());
+            profile.setRemembered(in.read() == 1);
+            int nb = in.readVarInt();
+            for (int i = 0; i < nb; i++) {
+                profile.addRole(in.readString());
+            }
+            nb = in.readVarInt();
+            for (int i = 0; i < nb; i++) {
+                profile.addPermission(in.readString());
+            }
+            final Map<String, Object> attributes = ProfileAttributes.getAttributes(profile);
+            nb = in.readVarInt();
+            for (int i = 0; i < nb; i++) {
+                final int index = in.readVarInt();
+                final String name = index > 0 ? NAMES[index - 1] : in.readString();
+                attributes.put(name, in.readValue());
+            }
+            return profile;
+        } catch (final Exception e) {
+            logger.error("cannot decode profile", e);
+            return null;
+        }
+    }
+
+    private static Class<?> loadClass(final String name) throws ClassNotFoundException {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader != null) {
+            try {
+                return Class.forName(name, true, loader);
+            } catch (final ClassNotFoundException e) {
+                // try below
+            }
+        }
+        return Class.forName(name);
+    }
+
+    private static byte[] deflate(final byte[] data, final int length) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, HEADER_LENGTH, length - HEADER_LENGTH);
+            deflater.finish();
+            final byte[] result = new byte[length];
+            final int compressed = deflater.deflate(result, HEADER_LENGTH, length - HEADER_LENGTH);
+            // no gain: keep the raw data
+            if (!deflater.finished()) {
+                return null;
+            }
+            final byte[] trimmed = new byte[HEADER_LENGTH + 4 + compressed];
+            final int bodyLength = length - HEADER_LENGTH;
+            trimmed[3] = (byte) (bodyLength >>> 24);
+            trimmed[4] = (byte) (bodyLength >>> 16);
+            trimmed[5] = (byte) (bodyLength >>> 8);
+            trimmed[6] = (byte) bodyLength;
+            System.arraycopy(result, HEADER_LENGTH, trimmed, HEADER_LENGTH + 4, compressed);
+            return trimmed.length < length ? trimmed : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] data) throws DataFormatException {
+        final int bodyLength = (data[3] & 0xff) << 24 | (data[4] & 0xff) << 16 | (data[5] & 0xff) << 8 | (data[6] & 0xff);
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_LENGTH + 4, data.length - HEADER_LENGTH - 4);
+            final byte[] body = new byte[bodyLength];
+            final int inflated = inflater.inflate(body);
+            if (inflated != bodyLength) {
+                throw new DataFormatException("truncated profile data");
+            }
+            return body;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private final static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(256);
+        }
+
+        byte[] getBuffer() {
+            return this.buf;
+        }
+
+        void skip(final int nb) {
+            for (int i = 0; i < nb; i++) {
+                write(0);
+            }
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7f) != 0) {
+                write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(final String value) {
+            if (value == null) {
+                writeVarInt(0);
+            } else {
+                final byte[] bytes = value.getBytes(UTF8);
+                writeVarInt(bytes.length + 1);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        void writeStrings(final List<String> values) {
+            writeVarInt(values.size());
+            for (final String value : values) {
+                writeString(value);
+            }
+        }
+
+        void writeValue(final Object value) {
+            if (value == null) {
+                write(TAG_NULL);
+            } else if (value instanceof String) {
+                write(TAG_STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                write(TAG_INTEGER);
+                final int i = (Integer) value;
+                writeVarInt((i << 1) ^ (i >> 31));
+            } else if (value instanceof Long) {
+                write(TAG_LONG);
+                final long l = (Long) value;
+                writeVarLong((l << 1) ^ (l >> 63));
+            } else if (value instanceof Boolean) {
+                write(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Double) {
+                write(TAG_DOUBLE);
+                writeVarLong(Long.reverseBytes(Double.doubleToLongBits((Double) value)));
+            } else if (value instanceof Locale && value.toString().indexOf('#') < 0) {
+                write(TAG_LOCALE);
+                writeString(value.toString());
+            } else if (value.getClass() == Date.class) {
+                write(TAG_DATE);
+                writeVarLong(((Date) value).getTime());
+            } else if (value instanceof Enum) {
+                write(TAG_ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else if (value instanceof List && value instanceof Serializable) {
+                write(TAG_LIST);
+                final Collection<?> list = (Collection<?>) value;
+                writeVarInt(list.size());
+                for (final Object element : list) {
+                    writeValue(element);
+                }
+            } else {
+                write(TAG_SERIALIZED);
+                try {
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+                    out.writeObject(value);
+                    out.close();
+                    writeVarInt(bytes.size());
+                    bytes.writeTo(this);
+                } catch (final IOException e) {
+                    throw new TechnicalException(e);
+                }
+            }
+        }
+    }
+
+    private final static class Input {
+
+        private final byte[] data;
+
+        private int position;
+
+        Input(final byte[] data) {
+            this(data, 0);
+        }
+
+        Input(final byte[] data, final int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int read() {
+            return this.data[this.position++] & 0xff;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString() {
+            final int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            final String value = new String(this.data, this.position, length, UTF8);
+            this.position += length;
+            return value;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Object readValue() throws IOException, ClassNotFoundException {
+            final int tag = read();
+            switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString();
+            case TAG_INTEGER:
+                final int i = readVarInt();
+                return (i >>> 1) ^ -(i & 1);
+            case TAG_LONG:
+                final long l = readVarLong();
+                return (l >>> 1) ^ -(l & 1);
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(Long.reverseBytes(readVarLong()));
+            case TAG_LOCALE:
+                final String[] parts = readString().split("_", 3);
+                return new Locale(parts[0], parts.length > 1 ? parts[1] : "", parts.length > 2 ? parts[2] : "");
+            case TAG_DATE:
+                return new Date(readVarLong());
+            case TAG_ENUM:
+                final Class enumClass = loadClass(readString());
+                return Enum.valueOf(enumClass, readString());
+            case TAG_LIST:
+                final int size = readVarInt();
+                final List<Object> list = new ArrayList<Object>(size);
+                for (int j = 0; j < size; j++) {
+                    list.add(readValue());
+                }
+                return list;
+            case TAG_SERIALIZED:
+                final int length = readVarInt();
+                final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.data, this.position, length));
+                try {
+                    return in.readObject();
+                } finally {
+                    this.position += length;
+                    in.close();
+                }
+            default:
+                throw new IOException("unknown value tag : " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.pac4j.core.profile.UserProfile;
+
+import play.libs.F.Promise;
+
+/**
+ * This store keeps the objects in the local JVM, in a bounded number of entries with a per-entry timeout.
+ * <p />
+ * The entries are split in segments backed by a {@link ConcurrentHashMap}, so reads never lock. When a segment is full, a few entries
+ * are sampled with a clock hand and the least frequently used one is evicted (expired entries first): a spike of new sessions evicts
+ * other new sessions rather than the active ones.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class InMemoryStore extends AbstractSessionStore implements AsyncSessionStore, TouchableSessionStore {
+
+    public final static int DEFAULT_MAX_SIZE = 100000;
+
+    public final static int DEFAULT_CONCURRENCY = 16;
+
+    // number of entries looked at for each eviction
+    private final static int SAMPLE_SIZE = 8;
+
+    private final static int MAX_FREQUENCY = 15;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final int maxSize;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile AttributeInterner interner;
+
+    public InMemoryStore() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public InMemoryStore(final int maxSize) {
+        this(maxSize, DEFAULT_CONCURRENCY);
+    }
+
+    public InMemoryStore(final int maxSize, final int concurrency) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        int nbSegments = 1;
+        while (nbSegments < concurrency && nbSegments < maxSize) {
+            nbSegments <<= 1;
+        }
+        this.maxSize = maxSize;
+        this.segmentMask = nbSegments - 1;
+        this.segments = new Segment[nbSegments];
+        final int segmentCapacity = (maxSize + nbSegments - 1) / nbSegments;
+        for (int i = 0; i < nbSegments; i++) {
+            this.segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public Object get(final String key) {
+        final Segment segment = segmentFor(key);
+        final Entry entry = segment.map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            segment.remove(key, entry);
+            return null;
+        }
+        entry.hit();
+        return entry.value;
+    }
+
+    public void set(final String key, final Object value, final int timeout) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        final AttributeInterner interner = this.interner;
+        // an interned copy is stored, the instance of the caller is not modified
+        final Object stored = interner != null && value instanceof UserProfile ? interner.intern((UserProfile) value) : value;
+        final long expiresAt = timeout > 0 ? System.currentTimeMillis() + timeout * 1000L : 0L;
+        segmentFor(key).put(key, new Entry(stored, expiresAt));
+    }
+
+    public void remove(final String key) {
+        segmentFor(key).remove(key);
+    }
+
+    public boolean touch(final String key, final int timeout) {
+        final Segment segment = segmentFor(key);
+        final long now = System.currentTimeMillis();
+        final long expiresAt = timeout > 0 ? now + timeout * 1000L : 0L;
+        for (;;) {
+            final Entry entry = segment.map.get(key);
+            if (entry == null || entry.isExpired(now)) {
+                return false;
+            }
+            final Entry touched = new Entry(entry.value, expiresAt);
+            touched.frequency = entry.frequency;
+            // fails if the entry was removed or replaced meanwhile
+            if (segment.map.replace(key, entry, touched)) {
+                return true;
+            }
+        }
+    }
+
+    // local operations never block: no need for another thread
+
+    public Promise<Object> getAsync(final String key) {
+        return Promise.pure(get(key));
+    }
+
+    public Promise<Void> setAsync(final String key, final Object value, final int timeout) {
+        set(key, value, timeout);
+        return Promise.<Void> pure(null);
+    }
+
+    public Promise<Void> removeAsync(final String key) {
+        remove(key);
+        return Promise.<Void> pure(null);
+    }
+
+    /**
+     * Return the current number of entries (expired entries not yet purged included).
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : this.segments) {
+            size += segment.size.get();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Return the number of entries evicted because the store was full.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    public AttributeInterner getInterner() {
+        return this.interner;
+    }
+
+    /**
+     * Define the pool shared by the attributes of the profiles saved in this store (none by default): the store keeps an interned copy
+     * of the profiles.
+     *
+     * @param interner
+     */
+    public void setInterner(final AttributeInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            for (final String key : segment.map.keySet()) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Visit the entries not expired (see {@link StoreSnapshot}).
+     *
+     * @param visitor
+     * @throws IOException
+     */
+    void visit(final EntryVisitor visitor) throws IOException {
+        final long now = System.currentTimeMillis();
+        for (final Segment segment : this.segments) {
+            for (final Map.Entry<String, Entry> entry : segment.map.entrySet()) {
+                final Entry value = entry.getValue();
+                if (!value.isExpired(now)) {
+                    visitor.visit(entry.getKey(), value.value, value.expiresAt);
+                }
+            }
+        }
+    }
+
+    interface EntryVisitor {
+
+        void visit(String key, Object value, long expiresAt) throws IOException;
+    }
+
+    private Segment segmentFor(final String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return this.segments[h & this.segmentMask];
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryStore[maxSize=" + this.maxSize + ", size=" + size() + ", evictions=" + this.evictions.get() + "]";
+    }
+
+    static final class Entry {
+
+        final Object value;
+
+        final long expiresAt;
+
+        // approximate frequency: lost updates between threads are acceptable
+        int frequency = 1;
+
+        Entry(final Object value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(final long now) {
+            return this.expiresAt != 0L && this.expiresAt <= now;
+        }
+
+        void hit() {
+            final int f = this.frequency;
+            if (f < MAX_FREQUENCY) {
+                this.frequency = f + 1;
+            }
+        }
+    }
+
+    final class Segment {
+
+        final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<String, Entry>();
+
+        final AtomicInteger size = new AtomicInteger();
+
+        final int capacity;
+
+        // only used by the thread holding the eviction lock
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        private Iterator<Map.Entry<String, Entry>> hand;
+
+        Segment(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(final String key, final Entry entry) {
+            if (this.map.put(key, entry) == null && this.size.incrementAndGet() > this.capacity) {
+                evict();
+            }
+        }
+
+        void remove(final String key) {
+            if (this.map.remove(key) != null) {
+                this.size.decrementAndGet();
+            }
+        }
+
+        void remove(final String key, final Entry entry) {
+            if (this.map.remove(key, entry)) {
+                this.size.decrementAndGet();
+            }
+        }
+
+        private void evict() {
+            // another thread is already evicting in this segment
+            if (!this.evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                final long now = System.currentTimeMillis();
+                while (this.size.get() > this.capacity) {
+                    String victimKey = null;
+                    Entry victim = null;
+                    for (int i = 0; i < SAMPLE_SIZE; i++) {
+                        if (this.hand == null || !this.hand.hasNext()) {
+                            this.hand = this.map.entrySet().iterator();
+                            if (!this.hand.hasNext()) {
+                                break;
+                            }
+                        }
+                        final Map.Entry<String, Entry> candidate = this.hand.next();
+                        final Entry entry = candidate.getValue();
+                        if (entry.isExpired(now)) {
+                            victimKey = candidate.getKey();
+                            victim = entry;
+                            break;
+                        }
+                        if (victim == null || entry.frequency < victim.frequency) {
+                            victimKey = candidate.getKey();
+                            victim = entry;
+                        }
+                        // age the entries passed by the hand
+                        entry.frequency = entry.frequency >>> 1;
+                    }
+                    if (victim == null) {
+                        return;
+                    }
+                    if (this.map.remove(victimKey, victim)) {
+                        this.size.decrementAndGet();
+                        if (!victim.isExpired(now)) {
+                            InMemoryStore.this.evictions.incrementAndGet();
+                        }
+                    }
+                }
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+}
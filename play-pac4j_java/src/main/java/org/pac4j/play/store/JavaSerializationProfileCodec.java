@@ -0,0 +1,66 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This codec uses the Java serialization (what a distributed Play cache does with the profile objects).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class JavaSerializationProfileCodec implements ProfileCodec {
+
+    private static final Logger logger = LoggerFactory.getLogger(JavaSerializationProfileCodec.class);
+
+    public byte[] encode(final CommonProfile profile) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(profile);
+            out.close();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    public CommonProfile decode(final byte[] data) {
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            try {
+                return (CommonProfile) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            logger.error("cannot deserialize profile", e);
+        } catch (final ClassNotFoundException e) {
+            logger.error("cannot deserialize profile", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,546 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This store keeps the entries in a memory-mapped file, so that they survive the restarts of the application without any external
+ * cache service.
+ * <p />
+ * The file is an append-only log of records (checked by a CRC32) and an in-memory index gives the position of the last record of
+ * each key: a write appends a record, a removal appends a tombstone, a read is a lookup in the index and a copy from the mapped
+ * memory. When the node starts, the log is read again to rebuild the index, up to the first incomplete record.
+ * <p />
+ * The entries expire at an absolute time, also after a restart. The log is compacted (live entries copied to a new file) in
+ * background when more than half of it is obsolete. Values are saved as bytes, strings or serialized objects.
+ * <p />
+ * The directory is locked while the store is open: a second store (in this process or in another one, like the new version of the
+ * application during a deployment on the same host) cannot open it before the first one is closed.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class MappedFileStore extends AbstractSessionStore implements TouchableSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileStore.class);
+
+    public final static int DEFAULT_INITIAL_SIZE = 16 * 1024 * 1024;
+
+    public final static int DEFAULT_COMPACTION_INTERVAL = 60;
+
+    private final static int MAGIC = 0x50344a31;
+
+    // length, crc, expiration, type, key length
+    private final static int RECORD_HEADER = 4 + 4 + 8 + 1 + 2;
+
+    private final static byte TOMBSTONE = 0;
+
+    private final static String PREFIX = "sessions-";
+
+    private final static String SUFFIX = ".log";
+
+    private final static String LOCK_FILE = "sessions.lock";
+
+    private final File directory;
+
+    private final int initialSize;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+
+    // current file, guarded by this
+    private long generation;
+
+    private RandomAccessFile file;
+
+    private MappedByteBuffer buffer;
+
+    private int position;
+
+    // exclusive use of the directory
+    private RandomAccessFile lockFile;
+
+    private FileLock lock;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean closed;
+
+    public MappedFileStore(final File directory) {
+        this(directory, DEFAULT_INITIAL_SIZE, DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * Open (or create) a store.
+     *
+     * @param directory the directory of the log files
+     * @param initialSize the initial size of the log file in bytes, doubled when full
+     * @param compactionInterval the interval between two checks for compaction in seconds, 0 for no background compaction
+     */
+    public MappedFileStore(final File directory, final int initialSize, final int compactionInterval) {
+        if (initialSize < 1024) {
+            throw new IllegalArgumentException("initialSize must be at least 1024 bytes");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new TechnicalException("Cannot create directory : " + directory);
+        }
+        this.directory = directory;
+        this.initialSize = initialSize;
+        lock();
+        try {
+            open();
+        } catch (final RuntimeException e) {
+            unlock();
+            throw e;
+        }
+        if (compactionInterval > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "pac4j-store-compaction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.scheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        compactIfNeeded();
+                    } catch (final RuntimeException e) {
+                        logger.error("compaction failed", e);
+                    }
+                }
+            }, compactionInterval, compactionInterval, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    public Object get(final String key) {
+        final Entry entry = this.index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        final ByteBuffer record = entry.buffer.duplicate();
+        record.position(entry.offset + RECORD_HEADER + entry.keyLength);
+        final byte[] value = new byte[entry.length - RECORD_HEADER - entry.keyLength];
+        record.get(value);
+        return StoreValues.decode(entry.type, value);
+    }
+
+    public void set(final String key, final Object value, final int timeout) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        final long expiresAt = timeout > 0 ? System.currentTimeMillis() + timeout * 1000L : 0;
+        final byte type = StoreValues.typeOf(value);
+        append(key, type, StoreValues.encode(type, value), expiresAt);
+    }
+
+    public void remove(final String key) {
+        if (this.index.containsKey(key)) {
+            append(key, TOMBSTONE, new byte[0], 0);
+        }
+    }
+
+    // the removals are appended under the same lock
+    public synchronized boolean touch(final String key, final int timeout) {
+        final Entry entry = this.index.get(key);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+        final ByteBuffer record = entry.buffer.duplicate();
+        record.position(entry.offset + RECORD_HEADER + entry.keyLength);
+        final byte[] value = new byte[entry.length - RECORD_HEADER - entry.keyLength];
+        record.get(value);
+        append(key, entry.type, value, timeout > 0 ? System.currentTimeMillis() + timeout * 1000L : 0);
+        return true;
+    }
+
+    /**
+     * Return the number of entries (including the expired entries not yet compacted).
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Return the number of bytes used in the current log file.
+     *
+     * @return the number of bytes
+     */
+    public synchronized int getLogSize() {
+        return this.position;
+    }
+
+    /**
+     * Compact the log: the live entries are copied into a new file which replaces the current one.
+     */
+    public synchronized void compact() {
+        checkOpen();
+        final long now = System.currentTimeMillis();
+        final long newGeneration = this.generation + 1;
+        final File tmp = new File(this.directory, PREFIX + newGeneration + ".tmp");
+        long liveSize = 4;
+        for (final Entry entry : this.index.values()) {
+            if (!entry.isExpired(now)) {
+                liveSize += entry.length;
+            }
+        }
+        if (liveSize > Integer.MAX_VALUE) {
+            throw new TechnicalException("Live entries do not fit in a log file : " + liveSize + " bytes");
+        }
+        RandomAccessFile newFile = null;
+        boolean compacted = false;
+        try {
+            newFile = new RandomAccessFile(tmp, "rw");
+            final MappedByteBuffer newBuffer = newFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.min(Integer.MAX_VALUE, Math.max(this.initialSize, liveSize * 2L)));
+            newBuffer.putInt(0, MAGIC);
+            int newPosition = 4;
+            final Map<String, Entry> newEntries = new ConcurrentHashMap<String, Entry>();
+            for (final Map.Entry<String, Entry> e : this.index.entrySet()) {
+                final Entry entry = e.getValue();
+                if (entry.isExpired(now)) {
+                    continue;
+                }
+                final ByteBuffer record = entry.buffer.duplicate();
+                record.position(entry.offset);
+                record.limit(entry.offset + entry.length);
+                final ByteBuffer target = newBuffer.duplicate();
+                target.position(newPosition);
+                target.put(record);
+                newEntries.put(e.getKey(), new Entry(newBuffer, newPosition, entry.length, entry.keyLength, entry.type,
+                    entry.expiresAt));
+                newPosition += entry.length;
+            }
+            newBuffer.force();
+            final File log = logFile(newGeneration);
+            if (!tmp.renameTo(log)) {
+                throw new TechnicalException("Cannot rename " + tmp + " to " + log);
+            }
+            compacted = true;
+            final RandomAccessFile oldFile = this.file;
+            final long oldGeneration = this.generation;
+            this.file = newFile;
+            this.buffer = newBuffer;
+            this.position = newPosition;
+            this.generation = newGeneration;
+            this.index.keySet().retainAll(newEntries.keySet());
+            this.index.putAll(newEntries);
+            oldFile.close();
+            // the mapping of the old file may prevent its deletion on some systems: deleted at the next start
+            if (!logFile(oldGeneration).delete()) {
+                logger.debug("cannot delete old log file : {}", logFile(oldGeneration));
+            }
+            logger.debug("compacted log to {} bytes, {} entries", newPosition, newEntries.size());
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        } finally {
+            if (!compacted) {
+                discard(newFile, tmp);
+            }
+        }
+    }
+
+    private void discard(final RandomAccessFile newFile, final File tmp) {
+        if (newFile != null) {
+            try {
+                newFile.close();
+            } catch (final IOException e) {
+                logger.debug("cannot close temporary log file : {}", tmp);
+            }
+        }
+        // the mapping may prevent its deletion on some systems: deleted at the next start
+        if (tmp.exists() && !tmp.delete()) {
+            logger.debug("cannot delete temporary log file : {}", tmp);
+        }
+    }
+
+    /**
+     * Compact the log if more than half of it is obsolete (overwritten, removed or expired entries).
+     */
+    public synchronized void compactIfNeeded() {
+        if (this.closed) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        long live = 0;
+        for (final Entry entry : this.index.values()) {
+            if (!entry.isExpired(now)) {
+                live += entry.length;
+            }
+        }
+        if (this.position > this.initialSize / 2 && live < this.position / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Flush the log to disk and release the file.
+     */
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+        this.buffer.force();
+        try {
+            this.file.close();
+        } catch (final IOException e) {
+            logger.warn("cannot close log file", e);
+        }
+        unlock();
+    }
+
+    private void lock() {
+        final File file = new File(this.directory, LOCK_FILE);
+        try {
+            this.lockFile = new RandomAccessFile(file, "rw");
+            try {
+                this.lock = this.lockFile.getChannel().tryLock();
+            } catch (final OverlappingFileLockException e) {
+                this.lock = null;
+            }
+        } catch (final IOException e) {
+            unlock();
+            throw new TechnicalException(e);
+        }
+        if (this.lock == null) {
+            unlock();
+            throw new TechnicalException("Directory already used by another store : " + this.directory);
+        }
+    }
+
+    private void unlock() {
+        try {
+            if (this.lock != null) {
+                this.lock.release();
+            }
+            if (this.lockFile != null) {
+                this.lockFile.close();
+            }
+        } catch (final IOException e) {
+            logger.warn("cannot release lock file", e);
+        }
+        this.lock = null;
+        this.lockFile = null;
+    }
+
+    private synchronized void append(final String key, final byte type, final byte[] value, final long expiresAt) {
+        checkOpen();
+        final byte[] keyBytes = key.getBytes(StoreValues.UTF8);
+        if (keyBytes.length > Short.MAX_VALUE) {
+            throw new TechnicalException("Key too long : " + key);
+        }
+        final long length = (long) RECORD_HEADER + keyBytes.length + value.length;
+        ensureCapacity(length);
+        final ByteBuffer record = this.buffer.duplicate();
+        record.position(this.position);
+        record.putInt((int) length);
+        record.putInt(0);
+        record.putLong(expiresAt);
+        record.put(type);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        record.put(value);
+        record.putInt(this.position + 4, crc(this.buffer, this.position, (int) length));
+        if (type == TOMBSTONE) {
+            this.index.remove(key);
+        } else {
+            this.index.put(key, new Entry(this.buffer, this.position, (int) length, keyBytes.length, type, expiresAt));
+        }
+        this.position += length;
+    }
+
+    private void ensureCapacity(final long length) {
+        if (this.position + length <= this.buffer.capacity()) {
+            return;
+        }
+        long capacity = this.buffer.capacity();
+        while (this.position + length > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new TechnicalException("Log file full, compact it");
+        }
+        try {
+            // the previous mapping remains valid for the entries already indexed
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    private void open() {
+        final File[] files = this.directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(PREFIX);
+            }
+        });
+        long last = -1;
+        for (final File f : files) {
+            final String name = f.getName();
+            if (name.endsWith(SUFFIX)) {
+                try {
+                    last = Math.max(last, Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (final NumberFormatException e) {
+                    logger.warn("unexpected file : {}", f);
+                }
+            }
+        }
+        // interrupted compactions and old generations
+        for (final File f : files) {
+            if (!f.getName().equals(PREFIX + last + SUFFIX) && !f.delete()) {
+                logger.warn("cannot delete file : {}", f);
+            }
+        }
+        this.generation = last >= 0 ? last : 0;
+        final File log = logFile(this.generation);
+        try {
+            this.file = new RandomAccessFile(log, "rw");
+            final long size = Math.max(this.initialSize, this.file.length());
+            if (size > Integer.MAX_VALUE) {
+                throw new TechnicalException("Log file too large : " + log);
+            }
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        }
+        if (this.buffer.getInt(0) != MAGIC) {
+            this.buffer.putInt(0, MAGIC);
+            this.position = 4;
+        } else {
+            recover();
+        }
+    }
+
+    private void recover() {
+        final long now = System.currentTimeMillis();
+        int pos = 4;
+        final int limit = this.buffer.capacity();
+        while (pos + RECORD_HEADER <= limit) {
+            final int length = this.buffer.getInt(pos);
+            if (length < RECORD_HEADER || pos + (long) length > limit
+                || this.buffer.getInt(pos + 4) != crc(this.buffer, pos, length)) {
+                // end of the log or record interrupted by a crash
+                break;
+            }
+            final long expiresAt = this.buffer.getLong(pos + 8);
+            final byte type = this.buffer.get(pos + 16);
+            final int keyLength = this.buffer.getShort(pos + 17);
+            final byte[] keyBytes = new byte[keyLength];
+            final ByteBuffer record = this.buffer.duplicate();
+            record.position(pos + RECORD_HEADER);
+            record.get(keyBytes);
+            final String key = new String(keyBytes, StoreValues.UTF8);
+            final Entry entry = new Entry(this.buffer, pos, length, keyLength, type, expiresAt);
+            if (type == TOMBSTONE || entry.isExpired(now)) {
+                this.index.remove(key);
+            } else {
+                this.index.put(key, entry);
+            }
+            pos += length;
+        }
+        this.position = pos;
+        logger.info("recovered {} entries from {}", this.index.size(), logFile(this.generation));
+    }
+
+    private File logFile(final long gen) {
+        return new File(this.directory, PREFIX + gen + SUFFIX);
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new TechnicalException("Store closed");
+        }
+    }
+
+    // crc of the record except its length and crc fields
+    private static int crc(final ByteBuffer buffer, final int offset, final int length) {
+        final byte[] data = new byte[length - 8];
+        final ByteBuffer record = buffer.duplicate();
+        record.position(offset + 8);
+        record.get(data);
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileStore[directory=" + this.directory + ", entries=" + size() + "]";
+    }
+
+    /**
+     * Position of the last record of a key in a mapped file.
+     */
+    private static final class Entry {
+
+        private final MappedByteBuffer buffer;
+
+        private final int offset;
+
+        private final int length;
+
+        private final int keyLength;
+
+        private final byte type;
+
+        private final long expiresAt;
+
+        private Entry(final MappedByteBuffer buffer, final int offset, final int length, final int keyLength, final byte type,
+                      final long expiresAt) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.keyLength = keyLength;
+            this.type = type;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(final long now) {
+            return this.expiresAt > 0 && this.expiresAt <= now;
+        }
+    }
+}
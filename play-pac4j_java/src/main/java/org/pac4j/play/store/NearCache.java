@@ -0,0 +1,186 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a local (L1) cache of user profiles in front of the {@link org.pac4j.play.Config#getStore()} store, to avoid a remote
+ * round trip for each request of the same user.
+ * <p />
+ * Entries live for a short timeout: a profile removed on another node (CAS logout for example) is still seen here until it expires.
+ * <p />
+ * A profile read from the store is only cached with {@link #putIfUnchanged(String, Object, long)}: an invalidation of the key while it
+ * was read (logout on this node) bumps its generation and the profile already removed is not cached again.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class NearCache {
+
+    public final static int DEFAULT_TIMEOUT = 5;
+
+    public final static int DEFAULT_MAX_SIZE = 10000;
+
+    private final InMemoryStore local;
+
+    private final int timeout;
+
+    private final static int GENERATION_STRIPES = 1024;
+
+    // generations per stripe of keys: bounded memory, an invalidation only skips the caching of the other keys of its stripe
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public NearCache() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    public NearCache(final int timeout) {
+        this(timeout, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Build a near cache.
+     *
+     * @param timeout in seconds
+     * @param maxSize the maximum number of profiles kept locally
+     */
+    public NearCache(final int timeout, final int maxSize) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.timeout = timeout;
+        this.local = new InMemoryStore(maxSize);
+    }
+
+    /**
+     * Get an object from the local cache.
+     *
+     * @param key
+     * @return the object or <code>null</code> if not cached locally
+     */
+    public Object get(final String key) {
+        final Object value = this.local.get(key);
+        if (value != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Save an object in the local cache.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(final String key, final Object value) {
+        this.local.set(key, value, this.timeout);
+    }
+
+    /**
+     * Return the current generation of a key, to read before loading its value from the store.
+     *
+     * @param key
+     * @return the generation
+     */
+    public long getGeneration(final String key) {
+        return this.generations.get(stripe(key));
+    }
+
+    /**
+     * Save an object loaded from the store in the local cache, unless the key was invalidated since its generation was read.
+     *
+     * @param key
+     * @param value
+     * @param generation the generation read before loading the value
+     * @return if the object is cached
+     */
+    public boolean putIfUnchanged(final String key, final Object value, final long generation) {
+        final int stripe = stripe(key);
+        if (this.generations.get(stripe) != generation) {
+            return false;
+        }
+        this.local.set(key, value, this.timeout);
+        // an invalidation between the check and the save
+        if (this.generations.get(stripe) != generation) {
+            this.local.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove an object from the local cache: the loads of this key in progress do not cache it again.
+     *
+     * @param key
+     */
+    public void invalidate(final String key) {
+        this.generations.incrementAndGet(stripe(key));
+        this.local.remove(key);
+    }
+
+    private static int stripe(final String key) {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    public AttributeInterner getInterner() {
+        return this.local.getInterner();
+    }
+
+    /**
+     * Define the pool shared by the attributes of the profiles cached locally (none by default).
+     *
+     * @param interner
+     */
+    public void setInterner(final AttributeInterner interner) {
+        this.local.setInterner(interner);
+    }
+
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    public double getHitRatio() {
+        final long h = this.hits.get();
+        final long total = h + this.misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public int size() {
+        return this.local.size();
+    }
+
+    @Override
+    public String toString() {
+        return "NearCache[timeout=" + this.timeout + ", hits=" + this.hits.get() + ", misses=" + this.misses.get() + "]";
+    }
+}
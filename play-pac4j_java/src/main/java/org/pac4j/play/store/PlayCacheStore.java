@@ -0,0 +1,44 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import play.cache.Cache;
+
+/**
+ * This store delegates to the Play cache API (default behaviour).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class PlayCacheStore extends AbstractSessionStore {
+
+    public Object get(final String key) {
+        return Cache.get(key);
+    }
+
+    public void set(final String key, final Object value, final int timeout) {
+        Cache.set(key, value, timeout);
+    }
+
+    public void remove(final String key) {
+        Cache.remove(key);
+    }
+
+    @Override
+    public String toString() {
+        return "PlayCacheStore";
+    }
+}
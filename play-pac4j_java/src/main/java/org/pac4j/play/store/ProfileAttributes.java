@@ -0,0 +1,135 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.UserProfile;
+
+/**
+ * This class gives access to the attributes and roles of a user profile to modify them or build a copy with other ones (the
+ * {@link UserProfile} only exposes unmodifiable views).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class ProfileAttributes {
+
+    private final static Field attributesField;
+
+    private final static Field rolesField;
+
+    private final static Field permissionsField;
+
+    static {
+        try {
+            attributesField = UserProfile.class.getDeclaredField("attributes");
+            attributesField.setAccessible(true);
+            rolesField = UserProfile.class.getDeclaredField("roles");
+            rolesField.setAccessible(true);
+            permissionsField = UserProfile.class.getDeclaredField("permissions");
+            permissionsField.setAccessible(true);
+        } catch (final NoSuchFieldException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    private ProfileAttributes() {
+    }
+
+    /**
+     * Get the modifiable attributes of a profile.
+     *
+     * @param profile
+     * @return the attributes
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getAttributes(final UserProfile profile) {
+        try {
+            return (Map<String, Object>) attributesField.get(profile);
+        } catch (final IllegalAccessException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Get the modifiable roles of a profile.
+     *
+     * @param profile
+     * @return the roles
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> getRoles(final UserProfile profile) {
+        try {
+            return (List<String>) rolesField.get(profile);
+        } catch (final IllegalAccessException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Copy a profile (same class, same fields) with other attributes and roles: the profile itself is left untouched. The profile class
+     * must have a default constructor, as required by pac4j to build the profiles.
+     *
+     * @param profile
+     * @param attributes the attributes of the copy
+     * @param roles the roles of the copy
+     * @return the copy
+     */
+    @SuppressWarnings("unchecked")
+    public static <U extends UserProfile> U copy(final U profile, final Map<String, Object> attributes, final List<String> roles) {
+        try {
+            final U copy = (U) profile.getClass().newInstance();
+            for (Class<?> c = profile.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        field.set(copy, field.get(profile));
+                    }
+                }
+            }
+            // the copy does not share the collections of the profile
+            attributesField.set(copy, attributes);
+            rolesField.set(copy, roles);
+            permissionsField.set(copy, new ArrayList<String>(profile.getPermissions()));
+            return copy;
+        } catch (final InstantiationException e) {
+            throw new TechnicalException(e);
+        } catch (final IllegalAccessException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Remove the attributes of a profile which are not in the given names.
+     *
+     * @param profile
+     * @param names the attributes to keep
+     * @return the number of removed attributes
+     */
+    public static int project(final UserProfile profile, final Collection<String> names) {
+        final Map<String, Object> attributes = getAttributes(profile);
+        final int size = attributes.size();
+        attributes.keySet().retainAll(names);
+        return size - attributes.size();
+    }
+}
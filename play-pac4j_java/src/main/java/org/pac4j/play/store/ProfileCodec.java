@@ -0,0 +1,43 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import org.pac4j.core.profile.CommonProfile;
+
+/**
+ * This interface converts user profiles to bytes before they are saved in the store, and back.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface ProfileCodec {
+
+    /**
+     * Encode a user profile.
+     *
+     * @param profile
+     * @return the bytes
+     */
+    byte[] encode(CommonProfile profile);
+
+    /**
+     * Decode a user profile.
+     *
+     * @param data
+     * @return the user profile or <code>null</code> if the bytes cannot be decoded
+     */
+    CommonProfile decode(byte[] data);
+}
@@ -0,0 +1,73 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class gathers all the attributes of a session in a single store entry (the user profile is saved apart).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public final class SessionBucket implements Serializable {
+
+    private static final long serialVersionUID = -3212536925843254071L;
+
+    // the same instance may be shared by concurrent requests with an in-process store
+    private final ConcurrentHashMap<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+    public Object get(final String key) {
+        return this.attributes.get(key);
+    }
+
+    /**
+     * Save an attribute, a <code>null</code> value removes it.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(final String key, final Object value) {
+        if (value != null) {
+            this.attributes.put(key, value);
+        } else {
+            this.attributes.remove(key);
+        }
+    }
+
+    public void remove(final String key) {
+        this.attributes.remove(key);
+    }
+
+    public boolean containsKey(final String key) {
+        return this.attributes.containsKey(key);
+    }
+
+    public boolean isEmpty() {
+        return this.attributes.isEmpty();
+    }
+
+    public Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionBucket" + this.attributes.keySet();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This interface is the storage backend used by the {@link org.pac4j.play.StorageHelper} to store user profiles and session attributes.
+ * <p />
+ * Keys are already prefixed by the {@link org.pac4j.play.Config#getCacheKeyPrefix()} when they reach the store.
+ * <p />
+ * The batch methods are called once per request with all the pending writes: a store backed by a remote cache should implement them
+ * with a single round trip (multi-get, pipelining...). The {@link AbstractSessionStore} implements them with the single key methods.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface SessionStore {
+
+    /**
+     * Get an object from the store.
+     *
+     * @param key
+     * @return the object or <code>null</code> if not found or expired
+     */
+    Object get(String key);
+
+    /**
+     * Save an object in the store.
+     *
+     * @param key
+     * @param value
+     * @param timeout in seconds, <code>0</code> means no expiration
+     */
+    void set(String key, Object value, int timeout);
+
+    /**
+     * Remove an object from the store.
+     *
+     * @param key
+     */
+    void remove(String key);
+
+    /**
+     * Get several objects from the store.
+     *
+     * @param keys
+     * @return the objects found by key (not found or expired keys are absent)
+     */
+    Map<String, Object> getAll(Collection<String> keys);
+
+    /**
+     * Save several objects in the store.
+     *
+     * @param values
+     * @param timeout in seconds, <code>0</code> means no expiration
+     */
+    void setAll(Map<String, Object> values, int timeout);
+
+    /**
+     * Remove several objects from the store.
+     *
+     * @param keys
+     */
+    void removeAll(Collection<String> keys);
+}
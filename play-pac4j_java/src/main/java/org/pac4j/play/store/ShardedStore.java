@@ -0,0 +1,217 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.play.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This store spreads the sessions over several stores (cache nodes) by consistent hashing with virtual nodes: all the entries of a
+ * session (<code>sessionId</code> and <code>sessionId$key</code> keys) are routed to the same store, and adding a store only moves
+ * a fraction of the sessions.
+ * <p />
+ * A failing store is handled as empty (reads return nothing, writes are ignored): only its sessions need to authenticate again.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class ShardedStore implements TouchableSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedStore.class);
+
+    public final static int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<SessionStore> shards;
+
+    private final TreeMap<Integer, SessionStore> ring = new TreeMap<Integer, SessionStore>();
+
+    public ShardedStore(final SessionStore... shards) {
+        this(DEFAULT_VIRTUAL_NODES, shards);
+    }
+
+    /**
+     * Build a sharded store.
+     *
+     * @param virtualNodes the number of points of each store on the ring
+     * @param shards the stores, identified by their position
+     */
+    public ShardedStore(final int virtualNodes, final SessionStore... shards) {
+        if (shards == null || shards.length == 0) {
+            throw new TechnicalException("At least one store is required");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<SessionStore>(Arrays.asList(shards)));
+        for (int i = 0; i < shards.length; i++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                this.ring.put(hash("shard-" + i + "#" + v), shards[i]);
+            }
+        }
+    }
+
+    /**
+     * Return the store of a key: the key is routed by its session identifier (the part before the first <code>$</code>).
+     *
+     * @param key
+     * @return the store
+     */
+    public SessionStore getShard(final String key) {
+        final int separator = key.indexOf(Constants.SEPARATOR);
+        final int h = hash(separator >= 0 ? key.substring(0, separator) : key);
+        final Map.Entry<Integer, SessionStore> entry = this.ring.ceilingEntry(h);
+        return entry != null ? entry.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    public List<SessionStore> getShards() {
+        return this.shards;
+    }
+
+    // FNV-1a with a final mix for an even spread on the ring
+    private static int hash(final String value) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public Object get(final String key) {
+        final SessionStore shard = getShard(key);
+        try {
+            return shard.get(key);
+        } catch (final RuntimeException e) {
+            logger.warn("store {} unavailable for get : {}", shard, e.getMessage());
+            return null;
+        }
+    }
+
+    public void set(final String key, final Object value, final int timeout) {
+        final SessionStore shard = getShard(key);
+        try {
+            shard.set(key, value, timeout);
+        } catch (final RuntimeException e) {
+            logger.warn("store {} unavailable for set : {}", shard, e.getMessage());
+        }
+    }
+
+    public void remove(final String key) {
+        final SessionStore shard = getShard(key);
+        try {
+            shard.remove(key);
+        } catch (final RuntimeException e) {
+            logger.warn("store {} unavailable for remove : {}", shard, e.getMessage());
+        }
+    }
+
+    public boolean touch(final String key, final int timeout) {
+        final SessionStore shard = getShard(key);
+        try {
+            if (shard instanceof TouchableSessionStore) {
+                return ((TouchableSessionStore) shard).touch(key, timeout);
+            }
+            // re-read: a removal between the read and the write is still possible
+            final Object value = shard.get(key);
+            if (value == null) {
+                return false;
+            }
+            shard.set(key, value, timeout);
+            return true;
+        } catch (final RuntimeException e) {
+            logger.warn("store {} unavailable for touch : {}", shard, e.getMessage());
+            return false;
+        }
+    }
+
+    public Map<String, Object> getAll(final Collection<String> keys) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final Map.Entry<SessionStore, List<String>> entry : groupByShard(keys).entrySet()) {
+            try {
+                values.putAll(entry.getKey().getAll(entry.getValue()));
+            } catch (final RuntimeException e) {
+                logger.warn("store {} unavailable for getAll : {}", entry.getKey(), e.getMessage());
+            }
+        }
+        return values;
+    }
+
+    public void setAll(final Map<String, Object> values, final int timeout) {
+        final Map<SessionStore, Map<String, Object>> groups = new IdentityHashMap<SessionStore, Map<String, Object>>();
+        for (final Map.Entry<String, Object> entry : values.entrySet()) {
+            final SessionStore shard = getShard(entry.getKey());
+            Map<String, Object> group = groups.get(shard);
+            if (group == null) {
+                group = new HashMap<String, Object>();
+                groups.put(shard, group);
+            }
+            group.put(entry.getKey(), entry.getValue());
+        }
+        for (final Map.Entry<SessionStore, Map<String, Object>> entry : groups.entrySet()) {
+            try {
+                entry.getKey().setAll(entry.getValue(), timeout);
+            } catch (final RuntimeException e) {
+                logger.warn("store {} unavailable for setAll : {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    public void removeAll(final Collection<String> keys) {
+        for (final Map.Entry<SessionStore, List<String>> entry : groupByShard(keys).entrySet()) {
+            try {
+                entry.getKey().removeAll(entry.getValue());
+            } catch (final RuntimeException e) {
+                logger.warn("store {} unavailable for removeAll : {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private Map<SessionStore, List<String>> groupByShard(final Collection<String> keys) {
+        final Map<SessionStore, List<String>> groups = new IdentityHashMap<SessionStore, List<String>>();
+        for (final String key : keys) {
+            final SessionStore shard = getShard(key);
+            List<String> group = groups.get(shard);
+            if (group == null) {
+                group = new ArrayList<String>();
+                groups.put(shard, group);
+            }
+            group.add(key);
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedStore[shards=" + this.shards.size() + "]";
+    }
+}
@@ -0,0 +1,126 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import scala.concurrent.ExecutionContext;
+
+/**
+ * This execution context runs the blocking calls to the {@link SessionStore} out of the Play request threads.
+ * <p />
+ * The number of threads and the queue are bounded: when the store is slow and the queue is full, the calls are rejected with a
+ * {@link RejectedExecutionException} (HTTP 503 for the protected actions) instead of piling up in memory.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class StoreExecutionContext implements ExecutionContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreExecutionContext.class);
+
+    public final static int DEFAULT_THREADS = 32;
+
+    public final static int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final Executor executor;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public StoreExecutionContext() {
+        this(DEFAULT_THREADS);
+    }
+
+    public StoreExecutionContext(final int nbThreads) {
+        this(nbThreads, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Build an execution context with its own threads.
+     *
+     * @param nbThreads the number of threads
+     * @param queueSize the maximum number of calls waiting for a thread
+     */
+    public StoreExecutionContext(final int nbThreads, final int queueSize) {
+        this(newExecutor(nbThreads, queueSize));
+    }
+
+    public StoreExecutionContext(final Executor executor) {
+        this.executor = executor;
+    }
+
+    private static ThreadPoolExecutor newExecutor(final int nbThreads, final int queueSize) {
+        if (nbThreads <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("nbThreads and queueSize must be positive");
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThreads, nbThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "pac4j-store-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public void execute(final Runnable runnable) {
+        try {
+            this.executor.execute(runnable);
+        } catch (final RejectedExecutionException e) {
+            this.rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of calls rejected because the queue was full.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    public void reportFailure(final Throwable t) {
+        logger.error("Store operation failed", t);
+    }
+
+    public ExecutionContext prepare() {
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreExecutionContext[" + this.executor + "]";
+    }
+}
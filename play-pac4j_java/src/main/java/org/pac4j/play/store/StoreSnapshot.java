@@ -0,0 +1,353 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.play.Config;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class saves the entries of an {@link InMemoryStore} with their remaining timeouts into a compressed file, and restores them
+ * when the application starts, so that the users stay authenticated across restarts.
+ * <p />
+ * Snapshots can be taken periodically ({@link #start(int)}) and at shutdown ({@link #stop()}). The snapshot is written and synced
+ * into a temporary file renamed over the previous one: the replacement is atomic on POSIX systems, on platforms which cannot rename
+ * over an existing file (Windows), the previous snapshot is deleted first and a crash in between loses it. The entries are
+ * restored by several threads: call {@link #restore()} before the application takes traffic.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class StoreSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreSnapshot.class);
+
+    public final static int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private final static int MAGIC = 0x50344a53;
+
+    private final static int BATCH_SIZE = 512;
+
+    private final InMemoryStore store;
+
+    private final File file;
+
+    private final int parallelism;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile long lastSnapshotBytes;
+
+    private volatile int lastSnapshotEntries;
+
+    private volatile long lastSnapshotTime;
+
+    private volatile int lastRestoreEntries;
+
+    private volatile long lastRestoreTime;
+
+    public StoreSnapshot(final InMemoryStore store, final File file) {
+        this(store, file, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Build a snapshot facility.
+     *
+     * @param store the store to save and restore
+     * @param file the snapshot file
+     * @param parallelism the number of threads restoring the entries
+     */
+    public StoreSnapshot(final InMemoryStore store, final File file, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.store = store;
+        this.file = file;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Save the entries not expired into the snapshot file.
+     *
+     * @return the number of entries saved
+     */
+    public synchronized int save() {
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+        final File tmp = new File(this.file.getPath() + ".tmp");
+        final AtomicInteger count = new AtomicInteger();
+        try {
+            final FileOutputStream fileOut = new FileOutputStream(tmp);
+            final GZIPOutputStream gzipOut = new GZIPOutputStream(fileOut, 64 * 1024);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzipOut));
+            try {
+                out.writeInt(MAGIC);
+                out.writeLong(now);
+                this.store.visit(new InMemoryStore.EntryVisitor() {
+                    public void visit(final String key, final Object value, final long expiresAt) throws IOException {
+                        final byte type;
+                        try {
+                            type = StoreValues.typeOf(value);
+                        } catch (final TechnicalException e) {
+                            logger.warn("entry not saved : {}", e.getMessage());
+                            return;
+                        }
+                        final byte[] data = StoreValues.encode(type, value);
+                        out.writeBoolean(true);
+                        out.writeUTF(key);
+                        out.writeByte(type);
+                        // remaining time to live, 0 for no expiration
+                        out.writeLong(expiresAt != 0 ? Math.max(1, expiresAt - now) : 0);
+                        out.writeInt(data.length);
+                        out.write(data);
+                        count.incrementAndGet();
+                    }
+                });
+                out.writeBoolean(false);
+                out.flush();
+                gzipOut.finish();
+                // the content must be on disk before the rename makes it the snapshot
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(this.file)) {
+                // the platform cannot rename over an existing file: not atomic
+                if (!this.file.delete() || !tmp.renameTo(this.file)) {
+                    throw new TechnicalException("Cannot rename " + tmp + " to " + this.file);
+                }
+            }
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        }
+        final long duration = System.nanoTime() - start;
+        this.lastSnapshotEntries = count.get();
+        this.lastSnapshotBytes = this.file.length();
+        this.lastSnapshotTime = TimeUnit.NANOSECONDS.toMillis(duration);
+        final MetricsRegistry metrics = Config.getMetricsRegistry();
+        metrics.recordTime(MetricsRegistry.SNAPSHOT_SAVE, duration);
+        metrics.increment(MetricsRegistry.SNAPSHOT_SAVE_BYTES, this.lastSnapshotBytes);
+        metrics.increment(MetricsRegistry.SNAPSHOT_SAVE_ENTRIES, this.lastSnapshotEntries);
+        logger.info("saved {} entries ({} bytes) in {} ms", this.lastSnapshotEntries, this.lastSnapshotBytes, this.lastSnapshotTime);
+        return this.lastSnapshotEntries;
+    }
+
+    /**
+     * Restore the entries of the snapshot file (if it exists) with their remaining timeouts.
+     *
+     * @return the number of entries restored
+     */
+    public int restore() {
+        if (!this.file.exists()) {
+            logger.info("no snapshot to restore : {}", this.file);
+            return 0;
+        }
+        final long start = System.nanoTime();
+        final long bytes = this.file.length();
+        final AtomicInteger count = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, new ThreadFactory() {
+            private final AtomicInteger number = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "pac4j-restore-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                new FileInputStream(this.file), 64 * 1024)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new TechnicalException("Invalid snapshot : " + this.file);
+                }
+                final long elapsed = System.currentTimeMillis() - in.readLong();
+                List<Record> batch = new ArrayList<Record>(BATCH_SIZE);
+                while (in.readBoolean()) {
+                    final String key = in.readUTF();
+                    final byte type = in.readByte();
+                    final long ttl = in.readLong();
+                    // -1 if expired since the snapshot
+                    final Record record = new Record(key, type, ttl == 0 ? 0 : (ttl > elapsed ? ttl - elapsed : -1));
+                    record.data = new byte[in.readInt()];
+                    in.readFully(record.data);
+                    batch.add(record);
+                    if (batch.size() == BATCH_SIZE) {
+                        futures.add(executor.submit(restoreTask(batch, count)));
+                        batch = new ArrayList<Record>(BATCH_SIZE);
+                    }
+                }
+                futures.add(executor.submit(restoreTask(batch, count)));
+            } finally {
+                in.close();
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(e);
+        } catch (final ExecutionException e) {
+            throw new TechnicalException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        final long duration = System.nanoTime() - start;
+        this.lastRestoreEntries = count.get();
+        this.lastRestoreTime = TimeUnit.NANOSECONDS.toMillis(duration);
+        final MetricsRegistry metrics = Config.getMetricsRegistry();
+        metrics.recordTime(MetricsRegistry.SNAPSHOT_RESTORE, duration);
+        metrics.increment(MetricsRegistry.SNAPSHOT_RESTORE_BYTES, bytes);
+        metrics.increment(MetricsRegistry.SNAPSHOT_RESTORE_ENTRIES, this.lastRestoreEntries);
+        logger.info("restored {} entries in {} ms", this.lastRestoreEntries, this.lastRestoreTime);
+        return this.lastRestoreEntries;
+    }
+
+    private Runnable restoreTask(final List<Record> batch, final AtomicInteger count) {
+        return new Runnable() {
+            public void run() {
+                for (final Record record : batch) {
+                    if (record.remaining < 0) {
+                        continue;
+                    }
+                    final Object value = StoreValues.decode(record.type, record.data);
+                    if (value != null) {
+                        final int timeout = record.remaining > 0 ? (int) ((record.remaining + 999) / 1000) : 0;
+                        store.set(record.key, value, timeout);
+                        count.incrementAndGet();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Take snapshots periodically in background.
+     *
+     * @param interval in seconds
+     */
+    public synchronized void start(final int interval) {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "pac4j-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    save();
+                } catch (final RuntimeException e) {
+                    logger.error("snapshot failed", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic snapshots and take a last one (at shutdown).
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+        save();
+    }
+
+    public long getLastSnapshotBytes() {
+        return this.lastSnapshotBytes;
+    }
+
+    public int getLastSnapshotEntries() {
+        return this.lastSnapshotEntries;
+    }
+
+    /**
+     * Return the duration of the last snapshot.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getLastSnapshotTime() {
+        return this.lastSnapshotTime;
+    }
+
+    public int getLastRestoreEntries() {
+        return this.lastRestoreEntries;
+    }
+
+    /**
+     * Return the duration of the last restore.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getLastRestoreTime() {
+        return this.lastRestoreTime;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreSnapshot[file=" + this.file + ", entries=" + this.lastSnapshotEntries + ", bytes=" + this.lastSnapshotBytes + "]";
+    }
+
+    private static final class Record {
+
+        private final String key;
+
+        private final byte type;
+
+        // remaining time to live in milliseconds at restore, 0 for no expiration, -1 if expired
+        private final long remaining;
+
+        private byte[] data;
+
+        private Record(final String key, final byte type, final long remaining) {
+            this.key = key;
+            this.type = type;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class converts the values of the stores to bytes for the files: bytes (encoded profiles) and strings as is, other objects with
+ * the Java serialization.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+final class StoreValues {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreValues.class);
+
+    final static byte BYTES = 1;
+
+    final static byte STRING = 2;
+
+    final static byte OBJECT = 3;
+
+    final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Return the type of a value.
+     *
+     * @param value
+     * @return the type
+     */
+    static byte typeOf(final Object value) {
+        if (value instanceof byte[]) {
+            return BYTES;
+        } else if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Serializable) {
+            return OBJECT;
+        }
+        throw new TechnicalException("Value not serializable : " + value.getClass().getName());
+    }
+
+    /**
+     * Convert a value to bytes.
+     *
+     * @param type
+     * @param value
+     * @return the bytes
+     */
+    static byte[] encode(final byte type, final Object value) {
+        if (type == BYTES) {
+            return (byte[]) value;
+        } else if (type == STRING) {
+            return ((String) value).getBytes(UTF8);
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    /**
+     * Convert bytes to a value.
+     *
+     * @param type
+     * @param data
+     * @return the value or <code>null</code> if it cannot be deserialized
+     */
+    static Object decode(final byte type, final byte[] data) {
+        if (type == BYTES) {
+            return data;
+        } else if (type == STRING) {
+            return new String(data, UTF8);
+        }
+        try {
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            logger.error("cannot deserialize value", e);
+        } catch (final ClassNotFoundException e) {
+            logger.error("cannot deserialize value", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+/**
+ * This interface can be implemented by a {@link SessionStore} able to extend the expiration of an entry only if it still exists: the
+ * sliding expiration of the profiles then cannot recreate a profile removed meanwhile (by a logout for example).
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public interface TouchableSessionStore extends SessionStore {
+
+    /**
+     * Extend the expiration of an existing entry, a missing or expired entry is not created.
+     *
+     * @param key
+     * @param timeout in seconds (0 for no expiration)
+     * @return if the entry exists
+     */
+    boolean touch(String key, int timeout);
+}
@@ -0,0 +1,122 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.cas.credentials.CasCredentials;
+import org.pac4j.cas.profile.CasProfile;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.play.java.JavaWebContext;
+
+import play.core.j.JavaHelpers$;
+import play.libs.F.Promise;
+import play.mvc.Http;
+import play.test.FakeRequest;
+
+/**
+ * This class tests the {@link AsyncCasClient} class with a stub CAS server.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class AsyncCasClientTests {
+
+    private static final String SUCCESS = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'><cas:authenticationSuccess>"
+            + "<cas:user>jdoe</cas:user><cas:attributes><cas:email>jdoe@example.com</cas:email></cas:attributes>"
+            + "</cas:authenticationSuccess></cas:serviceResponse>";
+
+    private static final String FAILURE = "<cas:serviceResponse xmlns:cas='http://www.yale.edu/tp/cas'>"
+            + "<cas:authenticationFailure code='INVALID_TICKET'>Ticket ST-1 not recognized</cas:authenticationFailure>"
+            + "</cas:serviceResponse>";
+
+    // the CAS server answers without any network call
+    private static class StubCasClient extends AsyncCasClient {
+
+        private String response;
+
+        private String url;
+
+        @Override
+        protected Promise<String> fetch(final String url) {
+            this.url = url;
+            return Promise.pure(this.response);
+        }
+    }
+
+    private StubCasClient client;
+
+    private JavaWebContext context;
+
+    @Before
+    public void setUp() {
+        this.client = new StubCasClient();
+        this.client.setCasLoginUrl("http://localhost:8080/cas/login");
+        this.client.setCallbackUrl("http://localhost:9000/callback");
+        final FakeRequest request = new FakeRequest("GET", "/callback?ticket=ST-1");
+        Http.Context.current.set(JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest()));
+        final Http.Context current = Http.Context.current();
+        this.context = new JavaWebContext(current.request(), current.response(), current.session());
+    }
+
+    @After
+    public void tearDown() {
+        Http.Context.current.remove();
+    }
+
+    @Test
+    public void getUserProfileAsync_whenTicketValid_returnsProfile() {
+        this.client.response = SUCCESS;
+        final CasProfile profile = this.client.getUserProfileAsync(new CasCredentials("ST-1", this.client.getName()), this.context)
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertEquals("jdoe", profile.getId());
+        Assert.assertEquals("jdoe@example.com", profile.getAttribute("email"));
+        Assert.assertTrue(this.client.url.startsWith("http://localhost:8080/cas/serviceValidate?"));
+        Assert.assertTrue(this.client.url.contains("ticket=ST-1"));
+        Assert.assertTrue(this.client.url.contains("service=http%3A%2F%2Flocalhost%3A9000%2Fcallback"));
+    }
+
+    @Test
+    public void getUserProfileAsync_whenTicketInvalid_fails() {
+        this.client.response = FAILURE;
+        try {
+            this.client.getUserProfileAsync(new CasCredentials("ST-1", this.client.getName()), this.context).get(5, TimeUnit.SECONDS);
+            Assert.fail("the validation must fail");
+        } catch (final RuntimeException e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof TechnicalException)) {
+                cause = cause.getCause();
+            }
+            Assert.assertNotNull(cause);
+        }
+    }
+
+    @Test(expected = TechnicalException.class)
+    public void init_whenSamlProtocol_throwsException() {
+        this.client.setCasProtocol(AsyncCasClient.CasProtocol.SAML);
+        this.client.init();
+    }
+
+    @Test
+    public void clone_keepsValidationTimeout() {
+        this.client.setValidationTimeout(1000);
+        Assert.assertEquals(1000, ((AsyncCasClient) this.client.clone()).getValidationTimeout());
+    }
+}
@@ -0,0 +1,86 @@
+package org.pac4j.play;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.play.Bulkhead.RejectionPolicy;
+
+/**
+ * This class tests the {@link Bulkhead} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class BulkheadTests {
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void execute_whenSaturated_rejects() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 1, RejectionPolicy.ABORT);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            bulkhead.execute(await(latch));
+            bulkhead.execute(await(latch));
+            try {
+                bulkhead.execute(await(latch));
+                Assert.fail("task should be rejected");
+            } catch (final RejectedExecutionException e) {
+                // expected
+            }
+            Assert.assertEquals(1, bulkhead.getRejectedCount());
+            Assert.assertEquals(1.0d, bulkhead.getSaturation(), 0.0d);
+        } finally {
+            latch.countDown();
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    public void execute_whenSaturatedAndCallerRuns_runsInCaller() {
+        final Bulkhead bulkhead = new Bulkhead("test", 1, 0, RejectionPolicy.CALLER_RUNS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            bulkhead.execute(await(latch));
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            bulkhead.execute(new Runnable() {
+                public void run() {
+                    thread.set(Thread.currentThread());
+                }
+            });
+            Assert.assertSame(Thread.currentThread(), thread.get());
+            Assert.assertEquals(1, bulkhead.getRejectedCount());
+        } finally {
+            latch.countDown();
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    public void virtual_runsTasks() throws InterruptedException {
+        final Bulkhead bulkhead = Bulkhead.virtual("test", 2, RejectionPolicy.ABORT);
+        Assert.assertEquals(Bulkhead.isVirtualThreadSupported(), bulkhead.isVirtual());
+        final CountDownLatch done = new CountDownLatch(1);
+        bulkhead.execute(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        bulkhead.shutdown();
+    }
+}
@@ -0,0 +1,178 @@
+package org.pac4j.play;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.core.client.BaseClient;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.client.Mechanism;
+import org.pac4j.core.client.RedirectAction;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.credentials.Credentials;
+import org.pac4j.core.exception.RequiresHttpAction;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.metrics.InMemoryMetricsRegistry;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.PlayCacheStore;
+
+import play.core.j.JavaHelpers$;
+import play.libs.F.Promise;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.FakeRequest;
+import play.test.Helpers;
+
+/**
+ * This class tests the callback of an {@link AsyncClient} by the {@link CallbackController}, with a stub provider.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class CallbackControllerTests {
+
+    private static final String CLIENT_NAME = "StubAsyncClient";
+
+    private static final String SESSION_ID = "sessionId";
+
+    private static final String METRIC = "callback." + CLIENT_NAME;
+
+    private static class StubCredentials extends Credentials {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class StubAsyncClient extends BaseClient<StubCredentials, CommonProfile> implements
+            AsyncClient<StubCredentials, CommonProfile> {
+
+        private boolean unauthorized;
+
+        private Promise<CommonProfile> profile;
+
+        @Override
+        protected void internalInit() {
+        }
+
+        @Override
+        protected BaseClient<StubCredentials, CommonProfile> newClient() {
+            return new StubAsyncClient();
+        }
+
+        @Override
+        protected boolean isDirectRedirection() {
+            return true;
+        }
+
+        @Override
+        protected RedirectAction retrieveRedirectAction(final WebContext context) {
+            return RedirectAction.redirect("http://localhost:8080/login");
+        }
+
+        @Override
+        protected StubCredentials retrieveCredentials(final WebContext context) throws RequiresHttpAction {
+            if (this.unauthorized) {
+                throw RequiresHttpAction.unauthorized("no credentials", context, null);
+            }
+            return new StubCredentials();
+        }
+
+        @Override
+        protected CommonProfile retrieveUserProfile(final StubCredentials credentials, final WebContext context) {
+            throw new UnsupportedOperationException("the profile is retrieved asynchronously");
+        }
+
+        @Override
+        public Mechanism getMechanism() {
+            return Mechanism.OAUTH_PROTOCOL;
+        }
+
+        public Promise<CommonProfile> getUserProfileAsync(final StubCredentials credentials, final WebContext context) {
+            return this.profile;
+        }
+    }
+
+    private StubAsyncClient client;
+
+    private InMemoryMetricsRegistry metrics;
+
+    private ClientLimiter limiter;
+
+    @Before
+    public void setUp() {
+        this.client = new StubAsyncClient();
+        Config.setClients(new Clients("http://localhost:9000/callback", this.client));
+        Config.setStore(new InMemoryStore());
+        this.metrics = new InMemoryMetricsRegistry();
+        Config.setMetricsRegistry(this.metrics);
+        this.limiter = new ClientLimiter(0, 1, 1);
+        Config.setClientLimiter(CLIENT_NAME, this.limiter);
+        final FakeRequest request = new FakeRequest("GET", "/callback?client_name=" + CLIENT_NAME).withSession(Constants.SESSION_ID,
+                SESSION_ID);
+        Http.Context.current.set(JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest()));
+    }
+
+    @After
+    public void tearDown() {
+        Http.Context.current.remove();
+        Config.setClients(null);
+        Config.setStore(new PlayCacheStore());
+        Config.setMetricsRegistry(null);
+        Config.setClientLimiter(CLIENT_NAME, null);
+    }
+
+    private static Result callback() {
+        return CallbackController.callback().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void callback_whenProfile_savesProfileAndRedirects() {
+        final CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        this.client.profile = Promise.pure(profile);
+        StorageHelper.saveRequestedUrl(SESSION_ID, CLIENT_NAME, "/protected");
+        final Result result = callback();
+        Assert.assertEquals(303, Helpers.status(result));
+        Assert.assertEquals("/protected", Helpers.redirectLocation(result));
+        Assert.assertEquals(profile.getTypedId(), StorageHelper.getProfile(SESSION_ID).getTypedId());
+        Assert.assertEquals(0, this.limiter.getInFlightCount());
+        Assert.assertEquals(1, this.metrics.getHistogram(METRIC).getCount());
+    }
+
+    @Test
+    public void callback_whenRequiresHttpAction_returnsUnauthorized() {
+        this.client.unauthorized = true;
+        final Result result = callback();
+        Assert.assertEquals(401, Helpers.status(result));
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+        Assert.assertEquals(0, this.limiter.getInFlightCount());
+        Assert.assertEquals(1, this.metrics.getHistogram(METRIC).getCount());
+    }
+
+    @Test
+    public void callback_whenProviderFails_releasesLimiter() {
+        this.client.profile = Promise.throwing(new TechnicalException("provider down"));
+        try {
+            callback();
+            Assert.fail("the failure must be propagated");
+        } catch (final RuntimeException e) {
+            // expected
+        }
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+        Assert.assertEquals(0, this.limiter.getInFlightCount());
+        Assert.assertEquals(1, this.metrics.getHistogram(METRIC).getCount());
+    }
+
+    @Test
+    public void callback_whenLimitExceeded_rejectsWithRetryAfter() {
+        this.client.profile = Promise.pure(new CommonProfile());
+        Assert.assertTrue(this.limiter.tryAcquire());
+        final Result result = callback();
+        Assert.assertEquals(503, Helpers.status(result));
+        Assert.assertNotNull(Http.Context.current().response().getHeaders().get(Http.HeaderNames.RETRY_AFTER));
+        this.limiter.release();
+        Assert.assertEquals(0, this.limiter.getInFlightCount());
+    }
+}
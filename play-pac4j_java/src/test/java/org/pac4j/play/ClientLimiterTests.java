@@ -0,0 +1,48 @@
+package org.pac4j.play;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link ClientLimiter} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class ClientLimiterTests {
+
+    @Test
+    public void tryAcquire_whenMaxConcurrency_rejects() {
+        ClientLimiter limiter = new ClientLimiter(0, 1, 2);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getInFlightCount());
+        Assert.assertEquals(1, limiter.getConcurrencyRejectedCount());
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(3, limiter.getAdmittedCount());
+    }
+
+    @Test
+    public void tryAcquire_whenRateExceeded_rejectsAndReleasesConcurrency() {
+        ClientLimiter limiter = new ClientLimiter(1, 2, 10);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getRateRejectedCount());
+        Assert.assertEquals(2, limiter.getInFlightCount());
+        Assert.assertTrue(limiter.getRetryAfterSeconds() >= 1);
+    }
+
+    @Test
+    public void acquireRate_refillsWithTime() {
+        ClientLimiter limiter = new ClientLimiter(10, 1, 0);
+        long now = System.nanoTime();
+        Assert.assertTrue(limiter.acquireRate(now));
+        Assert.assertFalse(limiter.acquireRate(now));
+        Assert.assertTrue(limiter.acquireRate(now + TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+}
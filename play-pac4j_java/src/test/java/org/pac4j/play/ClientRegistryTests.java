@@ -0,0 +1,65 @@
+package org.pac4j.play;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.cas.client.CasClient;
+import org.pac4j.core.client.BaseClient;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.play.java.RequiresAuthentication;
+
+/**
+ * This class tests the {@link ClientRegistry} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class ClientRegistryTests {
+
+    private static class Controller {
+        @RequiresAuthentication(clientName = "CasClient")
+        public void known() {
+        }
+
+        @RequiresAuthentication(clientName = "FacebookClient")
+        public void unknown() {
+        }
+    }
+
+    @RequiresAuthentication(clientName = "CasClient")
+    private static class ProtectedController {
+    }
+
+    private static ClientRegistry newRegistry() {
+        final CasClient casClient = new CasClient();
+        casClient.setCasLoginUrl("http://localhost:8080/cas/login");
+        return new ClientRegistry(new Clients("http://localhost:9000/callback", casClient));
+    }
+
+    @Test
+    public void findClient_returnsInitializedClient() {
+        final BaseClient<?, ?> client = (BaseClient<?, ?>) newRegistry().findClient("CasClient");
+        Assert.assertEquals(CasClient.class, client.getClass());
+        Assert.assertEquals("http://localhost:9000/callback?client_name=CasClient", client.getCallbackUrl());
+    }
+
+    @Test(expected = TechnicalException.class)
+    public void findClient_whenUnknownName_throwsException() {
+        newRegistry().findClient("FacebookClient");
+    }
+
+    @Test
+    public void validate_whenKnownNames_succeeds() {
+        newRegistry().validate(ProtectedController.class);
+    }
+
+    @Test
+    public void validate_whenUnknownName_throwsException() {
+        try {
+            newRegistry().validate(ProtectedController.class, Controller.class);
+            Assert.fail("FacebookClient is not defined");
+        } catch (final TechnicalException e) {
+            Assert.assertTrue(e.getMessage().contains("FacebookClient"));
+        }
+    }
+}
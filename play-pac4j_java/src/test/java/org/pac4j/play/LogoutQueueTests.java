@@ -0,0 +1,167 @@
+package org.pac4j.play;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.java.JavaWebContext;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.NearCache;
+import org.pac4j.play.store.PlayCacheStore;
+
+import play.core.j.JavaHelpers$;
+import play.mvc.Http;
+import play.test.FakeRequest;
+
+/**
+ * This class tests the {@link LogoutQueue} and {@link PlayLogoutHandler} classes
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class LogoutQueueTests {
+
+    private static final String LOGOUT_REQUEST = "<samlp:LogoutRequest xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" ID=\"id\" "
+            + "Version=\"2.0\" IssueInstant=\"now\"><saml:NameID xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\">@NOT_USED@"
+            + "</saml:NameID><samlp:SessionIndex>ST-1-abc</samlp:SessionIndex></samlp:LogoutRequest>";
+
+    @After
+    public void tearDown() {
+        Config.setStore(new PlayCacheStore());
+        Config.setLogoutQueue(null);
+        Config.setNearCache(null);
+        Config.setProfileTimeout(3600);
+        Config.setProfileRefreshRatio(0);
+        Http.Context.current.remove();
+    }
+
+    @Test
+    public void getSessionIndex_returnsTicket() {
+        Assert.assertEquals("ST-1-abc", PlayLogoutHandler.getSessionIndex(LOGOUT_REQUEST));
+    }
+
+    @Test
+    public void getSessionIndex_whenExternalEntity_returnsNull() {
+        final String request = "<?xml version=\"1.0\"?><!DOCTYPE r [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                + "<LogoutRequest><SessionIndex>&xxe;</SessionIndex></LogoutRequest>";
+        Assert.assertNull(PlayLogoutHandler.getSessionIndex(request));
+        Assert.assertNull(PlayLogoutHandler.getSessionIndex("not xml"));
+    }
+
+    @Test
+    public void offer_destroysSessionsInBackground() throws InterruptedException {
+        final InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        for (int i = 0; i < 10; i++) {
+            StorageHelper.save("ST-" + i, "session" + i, 0);
+            StorageHelper.saveProfile("session" + i, new CommonProfile());
+        }
+        final LogoutQueue queue = new LogoutQueue(100, 4);
+        Config.setLogoutQueue(queue);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(queue.offer("ST-" + i));
+        }
+        for (int i = 0; i < 100 && queue.getProcessedCount() < 10; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(10, queue.getProcessedCount());
+        Assert.assertEquals(0, queue.getQueueDepth());
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void offer_whenStopped_refusesTicketsAndDoesNotRestart() {
+        final InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        final LogoutQueue queue = new LogoutQueue(100, 4);
+        Config.setLogoutQueue(queue);
+        Assert.assertTrue(queue.offer("ST-1"));
+        // a request still holding the previous queue
+        Config.setLogoutQueue(new LogoutQueue());
+        Assert.assertTrue(queue.isStopped());
+        Assert.assertFalse(queue.offer("ST-2"));
+        Assert.assertEquals(0, queue.getQueueDepth());
+        Assert.assertEquals(0, queue.getRejectedCount());
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(thread.getName().equals("pac4j-logout") && thread.isAlive());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void start_whenStopped_throwsException() {
+        final LogoutQueue queue = new LogoutQueue();
+        queue.start();
+        queue.stop();
+        queue.start();
+    }
+
+    @Test
+    public void destroySessions_afterSlidingRefreshes_destroysSession() throws InterruptedException {
+        Config.setStore(new InMemoryStore());
+        Config.setProfileTimeout(1);
+        Config.setProfileRefreshRatio(0.25);
+        // CAS login: the ticket is recorded with the session
+        final FakeRequest request = new FakeRequest("GET", "/callback?ticket=ST-1").withSession(Constants.SESSION_ID, "session1");
+        Http.Context.current.set(JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest()));
+        final Http.Context context = Http.Context.current();
+        new PlayLogoutHandler().recordSession(new JavaWebContext(context.request(), context.response(), context.session()), "ST-1");
+        final CommonProfile profile = new CommonProfile();
+        StorageHelper.saveProfile("session1", profile);
+        final Map<String, String> session = new HashMap<String, String>(context.session());
+        // active user, kept alive past the original timeout
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(600);
+            session.putAll(StorageHelper.refreshProfile(session, "session1", profile));
+        }
+        Assert.assertNotNull(StorageHelper.getProfile("session1"));
+        PlayLogoutHandler.destroySessions(Arrays.asList("ST-1"));
+        Assert.assertNull(StorageHelper.getProfile("session1"));
+    }
+
+    @Test
+    public void destroySessions_removesProfilesAndTickets() {
+        final InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        StorageHelper.save("ST-1", "session1", 0);
+        StorageHelper.saveProfile("session1", new CommonProfile());
+        StorageHelper.saveProfile("session2", new CommonProfile());
+        PlayLogoutHandler.destroySessions(Arrays.asList("ST-1", "ST-unknown"));
+        Assert.assertNull(StorageHelper.getProfile("session1"));
+        Assert.assertNotNull(StorageHelper.getProfile("session2"));
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void destroySessions_whenProfileReadBeforeRemovalFlushed_invalidatesNearCache() throws InterruptedException {
+        final InMemoryStore store = new InMemoryStore() {
+            @Override
+            public void removeAll(final Collection<String> keys) {
+                // another request reads the profile while the removals are still pending
+                final Thread reader = new Thread(new Runnable() {
+                    public void run() {
+                        StorageHelper.getProfile("session1");
+                    }
+                });
+                reader.start();
+                try {
+                    reader.join();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.removeAll(keys);
+            }
+        };
+        Config.setStore(store);
+        Config.setNearCache(new NearCache());
+        StorageHelper.save("ST-1", "session1", 0);
+        StorageHelper.saveProfile("session1", new CommonProfile());
+        PlayLogoutHandler.destroySessions(Arrays.asList("ST-1"));
+        Assert.assertNull(Config.getNearCache().get("session1"));
+        Assert.assertNull(StorageHelper.getProfile("session1"));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link SingleFlight} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class SingleFlightTests {
+
+    private static final String KEY = "sessionId";
+
+    @Test
+    public void load_whenConcurrent_callsLoaderOnce() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<String>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Callable<String> load = new Callable<String>() {
+                public String call() {
+                    return singleFlight.load(KEY, new Callable<String>() {
+                        public String call() throws Exception {
+                            calls.incrementAndGet();
+                            started.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                            return "profile";
+                        }
+                    });
+                }
+            };
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+            results.add(executor.submit(load));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(load));
+            }
+            // let the other callers join the load in progress
+            Thread.sleep(100);
+            release.countDown();
+            for (final Future<String> result : results) {
+                Assert.assertEquals("profile", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void load_whenLoaderFails_rethrowsAndCleansUp() {
+        final SingleFlight<String> singleFlight = new SingleFlight<String>();
+        try {
+            singleFlight.load(KEY, new Callable<String>() {
+                public String call() {
+                    throw new IllegalStateException("store down");
+                }
+            });
+            Assert.fail();
+        } catch (final IllegalStateException e) {
+            Assert.assertEquals("store down", e.getMessage());
+        }
+        Assert.assertEquals(0, singleFlight.size());
+        Assert.assertEquals("profile", singleFlight.load(KEY, new Callable<String>() {
+            public String call() {
+                return "profile";
+            }
+        }));
+    }
+}
@@ -1,7 +1,28 @@
 package org.pac4j.play;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.play.metrics.InMemoryMetricsRegistry;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.store.AbstractSessionStore;
+import org.pac4j.play.store.BinaryProfileCodec;
+import org.pac4j.play.store.InMemoryStore;
+import org.pac4j.play.store.NearCache;
+import org.pac4j.play.store.PlayCacheStore;
 
 /**
  * This class tests the @{link StorageHelper} class
@@ -13,6 +34,55 @@ public class StorageHelperTests {
 
     private static final String CACHE_KEY = "cacheKey";
 
+    private static final String SESSION_ID = "sessionId";
+
+    // returns copies like a remote cache: concurrent read-modify-writes of a bucket lose updates
+    private static class CopyingStore extends AbstractSessionStore {
+
+        private final ConcurrentHashMap<String, byte[]> values = new ConcurrentHashMap<String, byte[]>();
+
+        public Object get(final String key) {
+            final byte[] bytes = this.values.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void set(final String key, final Object value, final int timeout) {
+            try {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(value);
+                out.close();
+                this.values.put(key, bytes.toByteArray());
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void remove(final String key) {
+            this.values.remove(key);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Config.setCacheKeyPrefix("");
+        Config.setStore(new PlayCacheStore());
+        Config.setNearCache(null);
+        Config.setProfileCodec(new BinaryProfileCodec());
+        Config.setSessionBucket(false);
+        Config.setMetricsRegistry(null);
+        Config.setProfileRefreshRatio(0);
+        Config.setRequestedUrlInSessionMaxLength(0);
+        Config.setStatelessProfileSecrets();
+    }
+
     @Test
     public void getCacheKey_whenNullCacheKeyPrefix_returnsCacheKey() {
         Config.setCacheKeyPrefix(null);
@@ -32,4 +102,319 @@ public class StorageHelperTests {
         Assert.assertEquals(keyPrefix + ":" + CACHE_KEY, StorageHelper.getCacheKey(CACHE_KEY));
     }
 
+    @Test
+    public void getProfile_whenNearCache_readsStoreOnce() {
+        InMemoryStore store = new InMemoryStore();
+        NearCache nearCache = new NearCache();
+        Config.setStore(store);
+        Config.setNearCache(nearCache);
+        CommonProfile profile = new CommonProfile();
+        store.set(SESSION_ID, profile, 0);
+        Assert.assertSame(profile, StorageHelper.getProfile(SESSION_ID));
+        store.remove(SESSION_ID);
+        Assert.assertSame(profile, StorageHelper.getProfile(SESSION_ID));
+        Assert.assertEquals(1, nearCache.getHitCount());
+        Assert.assertEquals(1, nearCache.getMissCount());
+    }
+
+    @Test
+    public void getProfile_whenRemovedDuringLoad_doesNotCacheIt() {
+        final InMemoryStore store = new InMemoryStore() {
+            @Override
+            public Object get(final String key) {
+                final Object value = super.get(key);
+                // logout between the read of the store and the caching of the profile
+                StorageHelper.removeProfile(SESSION_ID);
+                return value;
+            }
+        };
+        Config.setStore(store);
+        Config.setNearCache(new NearCache());
+        store.set(SESSION_ID, new CommonProfile(), 0);
+        Assert.assertNotNull(StorageHelper.getProfile(SESSION_ID));
+        Assert.assertNull(Config.getNearCache().get(SESSION_ID));
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void getProfileAsync_whenRemovedDuringLoad_doesNotCacheIt() {
+        final InMemoryStore store = new InMemoryStore() {
+            @Override
+            public Object get(final String key) {
+                final Object value = super.get(key);
+                StorageHelper.removeProfile(SESSION_ID);
+                return value;
+            }
+        };
+        Config.setStore(store);
+        Config.setNearCache(new NearCache());
+        store.set(SESSION_ID, new CommonProfile(), 0);
+        Assert.assertNotNull(StorageHelper.getProfileAsync(SESSION_ID).get(5000L));
+        Assert.assertNull(Config.getNearCache().get(SESSION_ID));
+    }
+
+    @Test
+    public void removeProfile_whenNearCache_invalidatesNearCache() {
+        Config.setStore(new InMemoryStore());
+        Config.setNearCache(new NearCache());
+        StorageHelper.saveProfile(SESSION_ID, new CommonProfile());
+        StorageHelper.removeProfile(SESSION_ID);
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void saveProfile_whenProfileCodec_savesBytes() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        Assert.assertTrue(store.get(SESSION_ID) instanceof byte[]);
+        Assert.assertEquals(profile.getTypedId(), StorageHelper.getProfile(SESSION_ID).getTypedId());
+    }
+
+    @Test
+    public void saveProfile_whenNoProfileCodec_savesObject() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setProfileCodec(null);
+        CommonProfile profile = new CommonProfile();
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        Assert.assertSame(profile, store.get(SESSION_ID));
+        Assert.assertSame(profile, StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void saveProfile_whenSessionBucket_savesProfileApart() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setSessionBucket(true);
+        StorageHelper.saveRequestedUrl(SESSION_ID, "client", "/requested");
+        StorageHelper.saveProfile(SESSION_ID, new CommonProfile());
+        Assert.assertEquals(2, store.size());
+        StorageHelper.saveRequestedUrl(SESSION_ID, "client2", "/requested2");
+        Assert.assertNotNull(StorageHelper.getProfile(SESSION_ID));
+        Assert.assertEquals("/requested", StorageHelper.getRequestedUrl(SESSION_ID, "client"));
+        Assert.assertNotNull(StorageHelper.getProfile(SESSION_ID));
+        StorageHelper.removeProfile(SESSION_ID);
+        Assert.assertEquals(0, store.size());
+        Assert.assertNull(StorageHelper.getRequestedUrl(SESSION_ID, "client"));
+    }
+
+    @Test
+    public void getProfile_whenSessionBucketInScope_readsStoreOnce() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setSessionBucket(true);
+        StorageHelper.saveProfile(SESSION_ID, new CommonProfile());
+        final StorageScope scope = StorageScope.open();
+        try {
+            Assert.assertNotNull(StorageHelper.getProfile(SESSION_ID));
+            store.clear();
+            Assert.assertNotNull(StorageHelper.getProfile(SESSION_ID));
+        } finally {
+            scope.close();
+        }
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void save_whenScope_writesOnClose() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        final StorageScope scope = StorageScope.open();
+        try {
+            StorageHelper.saveRequestedUrl(SESSION_ID, "client", "/requested");
+            StorageHelper.save(SESSION_ID, "key", "value");
+            StorageHelper.remove(SESSION_ID, "key");
+            Assert.assertEquals(0, store.size());
+            Assert.assertEquals("/requested", StorageHelper.getRequestedUrl(SESSION_ID, "client"));
+            Assert.assertNull(StorageHelper.get(SESSION_ID, "key"));
+        } finally {
+            scope.close();
+        }
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals("/requested", StorageHelper.getRequestedUrl(SESSION_ID, "client"));
+    }
+
+    @Test
+    public void getAll_returnsFoundObjects() {
+        Config.setStore(new InMemoryStore());
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("key1", "value1");
+        values.put("key2", "value2");
+        StorageHelper.saveAll(SESSION_ID, values);
+        Map<String, Object> found = StorageHelper.getAll(SESSION_ID, "key1", "key2", "key3");
+        Assert.assertEquals(values, found);
+        StorageHelper.removeAll(SESSION_ID, "key1");
+        Assert.assertEquals(1, StorageHelper.getAll(Arrays.asList(SESSION_ID + Constants.SEPARATOR + "key2")).size());
+        Assert.assertNull(StorageHelper.get(SESSION_ID, "key1"));
+    }
+
+    @Test
+    public void getProfileAsync_returnsSavedProfile() {
+        Config.setStore(new InMemoryStore());
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfileAsync(SESSION_ID, profile).get(1000);
+        Assert.assertEquals(profile.getTypedId(), StorageHelper.getProfileAsync(SESSION_ID).get(1000).getTypedId());
+        StorageHelper.removeProfileAsync(SESSION_ID).get(1000);
+        Assert.assertNull(StorageHelper.getProfileAsync(SESSION_ID).get(1000));
+    }
+
+    @Test
+    public void getAsync_whenSessionBucket_returnsSavedObject() {
+        Config.setStore(new InMemoryStore());
+        Config.setSessionBucket(true);
+        StorageHelper.saveAsync(SESSION_ID, "key", "value").get(1000);
+        Assert.assertEquals("value", StorageHelper.getAsync(SESSION_ID, "key").get(1000));
+    }
+
+    @Test
+    public void get_recordsHitsAndMisses() {
+        InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Config.setMetricsRegistry(metrics);
+        Config.setStore(new InMemoryStore());
+        StorageHelper.save(SESSION_ID, "key", "value");
+        StorageHelper.get(SESSION_ID, "key");
+        StorageHelper.getAll(SESSION_ID, "key", "other");
+        Assert.assertEquals(2, metrics.getCount(MetricsRegistry.STORAGE_HIT));
+        Assert.assertEquals(1, metrics.getCount(MetricsRegistry.STORAGE_MISS));
+        Assert.assertEquals(2, metrics.getHistogram(MetricsRegistry.STORAGE_GET).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(MetricsRegistry.STORAGE_SAVE).getCount());
+    }
+
+    @Test
+    public void refreshProfile_whenFixedExpiration_doesNothing() {
+        Assert.assertTrue(StorageHelper.refreshProfile(new HashMap<String, String>(), SESSION_ID, new CommonProfile()).isEmpty());
+        Assert.assertFalse(StorageHelper.isRefreshDue(null));
+    }
+
+    @Test
+    public void refreshProfile_whenRecentRefresh_skipsWrite() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setProfileRefreshRatio(0.25);
+        Map<String, String> session = new HashMap<String, String>();
+        session.put(Constants.PROFILE_REFRESHED, String.valueOf(System.currentTimeMillis()));
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        Assert.assertTrue(StorageHelper.refreshProfile(session, SESSION_ID, profile).isEmpty());
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void refreshProfile_whenOldRefresh_extendsProfile() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setProfileRefreshRatio(0.25);
+        Map<String, String> session = new HashMap<String, String>();
+        // 20 minutes ago with a one hour timeout
+        session.put(Constants.PROFILE_REFRESHED, String.valueOf(System.currentTimeMillis() - 20 * 60 * 1000L));
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        Map<String, String> refreshed = StorageHelper.refreshProfile(session, SESSION_ID, profile);
+        Assert.assertTrue(refreshed.containsKey(Constants.PROFILE_REFRESHED));
+        Assert.assertEquals(profile.getTypedId(), StorageHelper.getProfile(SESSION_ID).getTypedId());
+    }
+
+    @Test
+    public void touchProfile_afterLogout_doesNotRecreateProfile() {
+        Config.setStore(new InMemoryStore());
+        Config.setNearCache(new NearCache());
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        Assert.assertTrue(StorageHelper.touchProfile(SESSION_ID));
+        StorageHelper.removeProfile(SESSION_ID);
+        Assert.assertFalse(StorageHelper.touchProfile(SESSION_ID));
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void touchProfile_whenStoreNotTouchable_doesNotRecreateProfile() {
+        Config.setStore(new CopyingStore());
+        StorageHelper.saveProfile(SESSION_ID, new CommonProfile());
+        Assert.assertTrue(StorageHelper.touchProfile(SESSION_ID));
+        StorageHelper.removeProfile(SESSION_ID);
+        Assert.assertFalse(StorageHelper.touchProfile(SESSION_ID));
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void refreshProfile_afterLogout_leavesNoProfile() {
+        Config.setStore(new InMemoryStore());
+        Config.setProfileRefreshRatio(0.25);
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        // the profile was read by the request, then the user logs out
+        StorageHelper.removeProfile(SESSION_ID);
+        Map<String, String> session = new HashMap<String, String>();
+        StorageHelper.refreshProfile(session, SESSION_ID, profile);
+        Assert.assertNull(StorageHelper.getProfile(SESSION_ID));
+    }
+
+    @Test
+    public void saveRequestedUrl_whenShortUrl_savesInSession() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setRequestedUrlInSessionMaxLength(20);
+        Map<String, String> session = new HashMap<String, String>();
+        StorageHelper.saveRequestedUrl(session, SESSION_ID, "client", "/protected");
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals("/protected", StorageHelper.getRequestedUrl(session, SESSION_ID, "client"));
+        Assert.assertTrue(session.isEmpty());
+    }
+
+    @Test
+    public void saveRequestedUrl_whenLongUrl_savesInStore() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setRequestedUrlInSessionMaxLength(5);
+        Map<String, String> session = new HashMap<String, String>();
+        StorageHelper.saveRequestedUrl(session, SESSION_ID, "client", "/protected");
+        Assert.assertTrue(session.isEmpty());
+        Assert.assertEquals("/protected", StorageHelper.getRequestedUrl(session, SESSION_ID, "client"));
+    }
+
+    @Test
+    public void saveRequestedUrl_whenStateless_savesInSession() {
+        InMemoryStore store = new InMemoryStore();
+        Config.setStore(store);
+        Config.setStatelessProfileSecrets("a secret of at least 16 chars");
+        Map<String, String> session = new HashMap<String, String>();
+        StorageHelper.saveRequestedUrl(session, SESSION_ID, "client", "/protected");
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals("/protected", StorageHelper.getRequestedUrl(session, SESSION_ID, "client"));
+    }
+
+    @Test
+    public void save_whenSessionBucketAndConcurrentWriters_keepsProfile() throws InterruptedException {
+        Config.setStore(new CopyingStore());
+        Config.setSessionBucket(true);
+        final CountDownLatch started = new CountDownLatch(4);
+        final Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            final String key = "key" + i;
+            writers[i] = new Thread(new Runnable() {
+                public void run() {
+                    started.countDown();
+                    for (int j = 0; j < 2000; j++) {
+                        StorageHelper.save(SESSION_ID, key, "value" + j);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        started.await(5, TimeUnit.SECONDS);
+        CommonProfile profile = new CommonProfile();
+        profile.setId("id");
+        StorageHelper.saveProfile(SESSION_ID, profile);
+        for (final Thread writer : writers) {
+            writer.join(10000);
+        }
+        Assert.assertEquals(profile.getTypedId(), StorageHelper.getProfile(SESSION_ID).getTypedId());
+    }
 }
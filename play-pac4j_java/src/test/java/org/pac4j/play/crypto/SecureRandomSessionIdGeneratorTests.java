@@ -0,0 +1,64 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.crypto;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link SecureRandomSessionIdGenerator} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class SecureRandomSessionIdGeneratorTests {
+
+    @Test
+    public void generate_returnsCompactUrlSafeId() {
+        final String id = new SecureRandomSessionIdGenerator().generate();
+        Assert.assertEquals(22, id.length());
+        Assert.assertTrue(id.matches("[A-Za-z0-9_-]+"));
+        Assert.assertEquals(16, Base64Url.decode(id).length);
+    }
+
+    @Test
+    public void generate_returnsUniqueIds() {
+        final SessionIdGenerator generator = new SecureRandomSessionIdGenerator();
+        final Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(ids.add(generator.generate()));
+        }
+    }
+
+    @Test
+    public void newSecureRandom_doesNotUseSharedNativePrng() {
+        final String algorithm = SecureRandomSessionIdGenerator.newSecureRandom().getAlgorithm();
+        Assert.assertFalse(algorithm.startsWith("NativePRNG"));
+    }
+
+    @Test
+    public void newSecureRandom_returnsDistinctlySeededInstances() {
+        final byte[] first = new byte[16];
+        final byte[] second = new byte[16];
+        SecureRandomSessionIdGenerator.newSecureRandom().nextBytes(first);
+        SecureRandomSessionIdGenerator.newSecureRandom().nextBytes(second);
+        Assert.assertFalse(Arrays.equals(first, second));
+    }
+}
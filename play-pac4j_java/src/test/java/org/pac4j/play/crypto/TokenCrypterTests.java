@@ -0,0 +1,58 @@
+package org.pac4j.play.crypto;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link TokenCrypter} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class TokenCrypterTests {
+
+    private static final String SECRET1 = "0123456789abcdef-secret1";
+
+    private static final String SECRET2 = "0123456789abcdef-secret2";
+
+    private static final byte[] PAYLOAD = "payload".getBytes();
+
+    @Test
+    public void open_whenSealed_returnsPayload() {
+        TokenCrypter crypter = new TokenCrypter(SECRET1);
+        String token = crypter.seal(PAYLOAD, System.currentTimeMillis());
+        Assert.assertTrue(Arrays.equals(PAYLOAD, crypter.open(token, 0)));
+    }
+
+    @Test
+    public void open_whenSealedWithPreviousSecret_returnsPayload() {
+        String token = new TokenCrypter(SECRET1).seal(PAYLOAD, System.currentTimeMillis());
+        TokenCrypter crypter = new TokenCrypter(SECRET2, SECRET1);
+        Assert.assertTrue(Arrays.equals(PAYLOAD, crypter.open(token, 0)));
+    }
+
+    @Test
+    public void open_whenUnknownSecret_returnsNull() {
+        String token = new TokenCrypter(SECRET1).seal(PAYLOAD, System.currentTimeMillis());
+        Assert.assertNull(new TokenCrypter(SECRET2).open(token, 0));
+    }
+
+    @Test
+    public void open_whenTampered_returnsNull() {
+        TokenCrypter crypter = new TokenCrypter(SECRET1);
+        String token = crypter.seal(PAYLOAD, System.currentTimeMillis());
+        char last = token.charAt(20);
+        String tampered = token.substring(0, 20) + (last == 'A' ? 'B' : 'A') + token.substring(21);
+        Assert.assertNull(crypter.open(tampered, 0));
+    }
+
+    @Test
+    public void open_whenTooOld_returnsNull() {
+        TokenCrypter crypter = new TokenCrypter(SECRET1);
+        String token = crypter.seal(PAYLOAD, System.currentTimeMillis() - 10000);
+        Assert.assertNull(crypter.open(token, 5000));
+        Assert.assertNotNull(crypter.open(token, 20000));
+    }
+}
@@ -0,0 +1,68 @@
+package org.pac4j.play.java;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.cas.client.CasClient;
+import org.pac4j.core.client.Clients;
+import org.pac4j.play.Config;
+
+/**
+ * This class tests the {@link AuthenticationDescriptor} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class AuthenticationDescriptorTests {
+
+    @RequiresAuthentication(clientName = "CasClient", targetUrl = "/target", isAjax = true)
+    private static class Protected {
+    }
+
+    @RequiresAuthentication(clientName = "CasClient", targetUrl = "/target", isAjax = true)
+    private static class OtherProtected {
+    }
+
+    private static final RequiresAuthentication ANNOTATION = Protected.class.getAnnotation(RequiresAuthentication.class);
+
+    private static Clients newClients() {
+        final CasClient casClient = new CasClient();
+        casClient.setCasLoginUrl("http://localhost:8080/cas/login");
+        return new Clients("http://localhost:9000/callback", casClient);
+    }
+
+    @After
+    public void tearDown() {
+        Config.setClients(null);
+    }
+
+    @Test
+    public void get_returnsCompiledDescriptor() {
+        Config.setClients(newClients());
+        final AuthenticationDescriptor descriptor = AuthenticationDescriptor.get(ANNOTATION);
+        Assert.assertEquals("CasClient", descriptor.clientName);
+        Assert.assertEquals("/target", descriptor.targetUrl);
+        Assert.assertTrue(descriptor.isAjax);
+        Assert.assertEquals(CasClient.class, descriptor.client.getClass());
+        Assert.assertSame(descriptor, AuthenticationDescriptor.get(ANNOTATION));
+    }
+
+    @Test
+    public void get_whenClientsChanged_resolvesClientAgain() {
+        Config.setClients(newClients());
+        final AuthenticationDescriptor descriptor = AuthenticationDescriptor.get(ANNOTATION);
+        final Clients clients = newClients();
+        Config.setClients(clients);
+        final AuthenticationDescriptor newDescriptor = AuthenticationDescriptor.get(ANNOTATION);
+        Assert.assertNotSame(descriptor, newDescriptor);
+        Assert.assertSame(Config.getClientRegistry().findClient("CasClient"), newDescriptor.client);
+    }
+
+    @Test
+    public void get_whenEqualAnnotationInstance_reusesDescriptor() {
+        Config.setClients(newClients());
+        final RequiresAuthentication other = OtherProtected.class.getAnnotation(RequiresAuthentication.class);
+        Assert.assertNotSame(ANNOTATION, other);
+        Assert.assertSame(AuthenticationDescriptor.get(ANNOTATION), AuthenticationDescriptor.get(other));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.java;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.play.Config;
+import org.pac4j.play.Constants;
+import org.pac4j.play.metrics.InMemoryMetricsRegistry;
+import org.pac4j.play.metrics.MetricsRegistry;
+import org.pac4j.play.store.AbstractSessionStore;
+import org.pac4j.play.store.PlayCacheStore;
+import org.pac4j.play.store.StoreExecutionContext;
+
+import play.core.j.JavaHelpers$;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.FakeRequest;
+import play.test.Helpers;
+
+/**
+ * This class tests the {@link RequiresAuthenticationAction} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class RequiresAuthenticationActionTests {
+
+    @RequiresAuthentication(clientName = "CasClient")
+    private static class Protected {
+    }
+
+    // a blocking store, called on the storage execution context
+    private static class BlockingStore extends AbstractSessionStore {
+
+        public Object get(final String key) {
+            return null;
+        }
+
+        public void set(final String key, final Object value, final int timeout) {
+        }
+
+        public void remove(final String key) {
+        }
+    }
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    private InMemoryMetricsRegistry metrics;
+
+    @Before
+    public void setUp() {
+        Config.setStore(new BlockingStore());
+        this.metrics = new InMemoryMetricsRegistry();
+        Config.setMetricsRegistry(this.metrics);
+        final FakeRequest request = new FakeRequest("GET", "/protected").withSession(Constants.SESSION_ID, "sessionId");
+        Http.Context.current.set(JavaHelpers$.MODULE$.createJavaContext(request.getWrappedRequest()));
+    }
+
+    @After
+    public void tearDown() {
+        this.blocked.countDown();
+        Http.Context.current.remove();
+        Config.setStore(new PlayCacheStore());
+        Config.setMetricsRegistry(null);
+        Config.setStorageExecutionContext(null);
+    }
+
+    @Test
+    public void call_whenStorageSaturated_returnsServiceUnavailable() throws Throwable {
+        final StoreExecutionContext executionContext = new StoreExecutionContext(1, 1);
+        Config.setStorageExecutionContext(executionContext);
+        // the only thread is blocked and the queue is full
+        for (int i = 0; i < 2; i++) {
+            executionContext.execute(new Runnable() {
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        final RequiresAuthenticationAction action = new RequiresAuthenticationAction();
+        action.configuration = Protected.class.getAnnotation(RequiresAuthentication.class);
+        final Result result = action.call(Http.Context.current()).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(503, Helpers.status(result));
+        Assert.assertEquals(1, executionContext.getRejectedCount());
+        Assert.assertEquals(1, this.metrics.getCount(MetricsRegistry.STORAGE_REJECTED));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class tests the {@link InMemoryMetricsRegistry} and {@link LatencyHistogram} classes.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class InMemoryMetricsRegistryTests {
+
+    @Test
+    public void increment_addsToCounter() {
+        final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.increment(MetricsRegistry.AUTHENTICATED, 1);
+        registry.increment(MetricsRegistry.AUTHENTICATED, 2);
+        Assert.assertEquals(3, registry.getCount(MetricsRegistry.AUTHENTICATED));
+        Assert.assertEquals(0, registry.getCount(MetricsRegistry.REDIRECTED));
+        Assert.assertEquals(Long.valueOf(3), registry.getCounters().get(MetricsRegistry.AUTHENTICATED));
+    }
+
+    @Test
+    public void getStorageHitRatio_computesRatio() {
+        final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Assert.assertEquals(0, registry.getStorageHitRatio(), 0);
+        registry.increment(MetricsRegistry.STORAGE_HIT, 3);
+        registry.increment(MetricsRegistry.STORAGE_MISS, 1);
+        Assert.assertEquals(0.75, registry.getStorageHitRatio(), 0);
+    }
+
+    @Test
+    public void recordTime_fillsHistogram() {
+        final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Assert.assertNull(registry.getHistogram(MetricsRegistry.STORAGE_GET));
+        for (int i = 1; i <= 99; i++) {
+            registry.recordTime(MetricsRegistry.STORAGE_GET, TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        registry.recordTime(MetricsRegistry.STORAGE_GET, TimeUnit.MILLISECONDS.toNanos(10));
+        final LatencyHistogram histogram = registry.getHistogram(MetricsRegistry.STORAGE_GET);
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(10, histogram.getMax(TimeUnit.MILLISECONDS));
+        // within a factor of 2
+        final long median = histogram.getPercentile(50, TimeUnit.NANOSECONDS);
+        Assert.assertTrue(median >= 10000 && median < 20000);
+        Assert.assertEquals(10, histogram.getPercentile(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals((99 * 10 + 10000) / 100.0, histogram.getMean(TimeUnit.MICROSECONDS), 0.01);
+    }
+
+    @Test
+    public void clear_resetsMetrics() {
+        final InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.increment(MetricsRegistry.LOGOUT, 1);
+        registry.recordTime(MetricsRegistry.STORAGE_SAVE, 1000);
+        registry.clear();
+        Assert.assertEquals(0, registry.getCount(MetricsRegistry.LOGOUT));
+        Assert.assertTrue(registry.getHistograms().isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+package org.pac4j.play.store;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+
+/**
+ * This class tests the {@link AttributeInterner} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class AttributeInternerTests {
+
+    // distinct instances, like the profiles decoded from the provider responses
+    private static CommonProfile newProfile(final String id) {
+        CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        profile.addAttribute(new String("locale"), new String("fr_FR"));
+        profile.addAttribute(new String("email"), id + "@example.com");
+        profile.addRole(new String("ROLE_USER"));
+        return profile;
+    }
+
+    private static String getKey(final CommonProfile profile, final String name) {
+        for (final Map.Entry<String, Object> entry : profile.getAttributes().entrySet()) {
+            if (entry.getKey().equals(name)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void intern_sharesNamesValuesAndRoles() {
+        AttributeInterner interner = new AttributeInterner();
+        CommonProfile profile1 = interner.intern(newProfile("1"));
+        Assert.assertEquals(0, interner.getSavedBytes());
+        CommonProfile profile2 = interner.intern(newProfile("2"));
+        Assert.assertTrue(interner.getSavedBytes() > 0);
+        Assert.assertSame(getKey(profile1, "locale"), getKey(profile2, "locale"));
+        Assert.assertSame(profile1.getAttribute("locale"), profile2.getAttribute("locale"));
+        Assert.assertSame(profile1.getRoles().get(0), profile2.getRoles().get(0));
+        Assert.assertEquals("2", profile2.getId());
+        Assert.assertEquals("2@example.com", profile2.getAttribute("email"));
+        Assert.assertEquals(2, interner.getProfileCount());
+        Assert.assertTrue(interner.getSavedBytesPerProfile() > 0);
+    }
+
+    @Test
+    public void intern_doesNotModifyTheProfile() {
+        AttributeInterner interner = new AttributeInterner();
+        interner.intern(newProfile("1"));
+        CommonProfile profile = newProfile("2");
+        profile.addPermission("read");
+        profile.setRemembered(true);
+        final Map<String, Object> attributes = ProfileAttributes.getAttributes(profile);
+        final List<String> roles = ProfileAttributes.getRoles(profile);
+        final String locale = getKey(profile, "locale");
+        final String role = roles.get(0);
+        final CommonProfile interned = interner.intern(profile);
+        Assert.assertNotSame(profile, interned);
+        Assert.assertSame(attributes, ProfileAttributes.getAttributes(profile));
+        Assert.assertSame(roles, ProfileAttributes.getRoles(profile));
+        Assert.assertSame(locale, getKey(profile, "locale"));
+        Assert.assertSame(role, profile.getRoles().get(0));
+        Assert.assertNotSame(locale, getKey(interned, "locale"));
+        Assert.assertEquals(profile.getId(), interned.getId());
+        Assert.assertEquals(profile.getAttributes(), interned.getAttributes());
+        Assert.assertEquals(profile.getRoles(), interned.getRoles());
+        Assert.assertEquals(profile.getPermissions(), interned.getPermissions());
+        Assert.assertTrue(interned.isRemembered());
+        // the copy does not share the permissions
+        profile.addPermission("write");
+        Assert.assertEquals(1, interned.getPermissions().size());
+    }
+
+    @Test
+    public void intern_whenAlreadyInterned_doesNothing() {
+        AttributeInterner interner = new AttributeInterner();
+        CommonProfile profile = interner.intern(newProfile("1"));
+        Assert.assertSame(profile, interner.intern(profile));
+        Assert.assertEquals(1, interner.getProfileCount());
+    }
+
+    @Test
+    public void intern_whenFull_keepsValues() {
+        AttributeInterner interner = new AttributeInterner(2, 64);
+        CommonProfile profile = interner.intern(newProfile("1"));
+        Assert.assertEquals(2, interner.size());
+        Assert.assertEquals("fr_FR", profile.getAttribute("locale"));
+        Assert.assertEquals("ROLE_USER", profile.getRoles().get(0));
+    }
+
+    @Test
+    public void project_keepsOnlyGivenAttributes() {
+        CommonProfile profile = newProfile("1");
+        Assert.assertEquals(1, ProfileAttributes.project(profile, Collections.singleton("email")));
+        Assert.assertEquals(1, profile.getAttributes().size());
+        Assert.assertEquals("1@example.com", profile.getAttribute("email"));
+    }
+}
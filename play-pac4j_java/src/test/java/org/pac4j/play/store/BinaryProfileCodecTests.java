@@ -0,0 +1,97 @@
+package org.pac4j.play.store;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.Gender;
+
+/**
+ * This class tests the {@link BinaryProfileCodec} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class BinaryProfileCodecTests {
+
+    public static class TestProfile extends CommonProfile {
+        private static final long serialVersionUID = 1L;
+    }
+
+    static TestProfile buildProfile(final int nbExtraAttributes) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("email", "jerome@example.com");
+        attributes.put("first_name", "Jerome");
+        attributes.put("gender", Gender.MALE);
+        attributes.put("locale", Locale.FRANCE);
+        attributes.put("access_token", "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA");
+        attributes.put("updated_time", new Date(1400000000000L));
+        attributes.put("verified", Boolean.TRUE);
+        attributes.put("followers_count", 1234);
+        attributes.put("expires", 5184000L);
+        attributes.put("score", 12.5d);
+        attributes.put("languages", Arrays.asList("fr", "en"));
+        attributes.put("custom_object", new StringBuilder("serialized"));
+        for (int i = 0; i < nbExtraAttributes; i++) {
+            attributes.put("custom_attribute_" + i, "value of the custom attribute " + i);
+        }
+        final TestProfile profile = new TestProfile();
+        profile.build("12345", attributes);
+        profile.addRole("ROLE_USER");
+        profile.addPermission("read");
+        profile.setRemembered(true);
+        return profile;
+    }
+
+    private static void assertSameProfile(final CommonProfile expected, final CommonProfile actual) {
+        Assert.assertEquals(expected.getClass(), actual.getClass());
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getTypedId(), actual.getTypedId());
+        Assert.assertEquals(expected.isRemembered(), actual.isRemembered());
+        Assert.assertEquals(expected.getRoles(), actual.getRoles());
+        Assert.assertEquals(expected.getPermissions(), actual.getPermissions());
+        Assert.assertEquals(expected.getAttributes().keySet(), actual.getAttributes().keySet());
+        for (final String key : expected.getAttributes().keySet()) {
+            Assert.assertEquals(String.valueOf(expected.getAttribute(key)), String.valueOf(actual.getAttribute(key)));
+        }
+    }
+
+    @Test
+    public void decode_whenEncoded_returnsSameProfile() {
+        final TestProfile profile = buildProfile(0);
+        final BinaryProfileCodec codec = new BinaryProfileCodec(Integer.MAX_VALUE);
+        final CommonProfile decoded = codec.decode(codec.encode(profile));
+        assertSameProfile(profile, decoded);
+        Assert.assertEquals(Gender.MALE, decoded.getGender());
+        Assert.assertEquals(Locale.FRANCE, decoded.getLocale());
+    }
+
+    @Test
+    public void decode_whenCompressed_returnsSameProfile() {
+        final TestProfile profile = buildProfile(50);
+        final BinaryProfileCodec codec = new BinaryProfileCodec();
+        final byte[] compressed = codec.encode(profile);
+        Assert.assertTrue(compressed.length < new BinaryProfileCodec(Integer.MAX_VALUE).encode(profile).length);
+        assertSameProfile(profile, codec.decode(compressed));
+    }
+
+    @Test
+    public void encode_isSmallerThanJavaSerialization() {
+        final TestProfile profile = buildProfile(10);
+        final int binarySize = new BinaryProfileCodec().encode(profile).length;
+        final int javaSize = new JavaSerializationProfileCodec().encode(profile).length;
+        Assert.assertTrue("binary : " + binarySize + " / java : " + javaSize, binarySize * 2 < javaSize);
+    }
+
+    @Test
+    public void decode_whenUnknownVersion_returnsNull() {
+        final byte[] data = new BinaryProfileCodec().encode(buildProfile(0));
+        data[1] = 99;
+        Assert.assertNull(new BinaryProfileCodec().decode(data));
+    }
+}
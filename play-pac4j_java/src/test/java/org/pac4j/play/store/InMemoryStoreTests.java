@@ -0,0 +1,99 @@
+package org.pac4j.play.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+
+/**
+ * This class tests the {@link InMemoryStore} class
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class InMemoryStoreTests {
+
+    private static final String KEY = "key";
+
+    private static final String VALUE = "value";
+
+    @Test
+    public void get_whenSaved_returnsValue() {
+        InMemoryStore store = new InMemoryStore();
+        store.set(KEY, VALUE, 0);
+        Assert.assertEquals(VALUE, store.get(KEY));
+    }
+
+    @Test
+    public void get_whenRemoved_returnsNull() {
+        InMemoryStore store = new InMemoryStore();
+        store.set(KEY, VALUE, 0);
+        store.remove(KEY);
+        Assert.assertNull(store.get(KEY));
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void set_whenNullValue_removesEntry() {
+        InMemoryStore store = new InMemoryStore();
+        store.set(KEY, VALUE, 0);
+        store.set(KEY, null, 0);
+        Assert.assertNull(store.get(KEY));
+    }
+
+    @Test
+    public void get_whenExpired_returnsNull() throws InterruptedException {
+        InMemoryStore store = new InMemoryStore();
+        store.set(KEY, VALUE, 1);
+        Thread.sleep(1100);
+        Assert.assertNull(store.get(KEY));
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void set_whenFull_staysBounded() {
+        InMemoryStore store = new InMemoryStore(100, 4);
+        for (int i = 0; i < 10000; i++) {
+            store.set(KEY + i, VALUE, 0);
+        }
+        Assert.assertTrue(store.size() <= 100);
+        Assert.assertTrue(store.getEvictionCount() >= 9900);
+    }
+
+    @Test
+    public void set_whenFull_keepsFrequentlyUsedEntries() {
+        InMemoryStore store = new InMemoryStore(100, 1);
+        store.set(KEY, VALUE, 0);
+        for (int i = 0; i < 1000; i++) {
+            store.set(KEY + i, VALUE, 0);
+            // the active session is read on every request
+            Assert.assertEquals(VALUE, store.get(KEY));
+        }
+        Assert.assertEquals(VALUE, store.get(KEY));
+    }
+
+    @Test
+    public void set_whenInterner_internsProfiles() {
+        InMemoryStore store = new InMemoryStore();
+        AttributeInterner interner = new AttributeInterner();
+        store.setInterner(interner);
+        CommonProfile profile = new CommonProfile();
+        profile.addAttribute("locale", "fr_FR");
+        store.set(KEY, profile, 0);
+        store.set(VALUE, VALUE, 0);
+        Assert.assertEquals(1, interner.getProfileCount());
+        // the stored copy is interned, the profile of the caller is untouched
+        final CommonProfile stored = (CommonProfile) store.get(KEY);
+        Assert.assertNotSame(profile, stored);
+        Assert.assertEquals("fr_FR", stored.getAttribute("locale"));
+    }
+
+    @Test
+    public void touch_whenMissing_doesNotCreateEntry() {
+        InMemoryStore store = new InMemoryStore();
+        Assert.assertFalse(store.touch(KEY, 10));
+        Assert.assertNull(store.get(KEY));
+        store.set(KEY, VALUE, 10);
+        Assert.assertTrue(store.touch(KEY, 10));
+        Assert.assertEquals(VALUE, store.get(KEY));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.core.exception.TechnicalException;
+
+/**
+ * This class tests the {@link MappedFileStore} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class MappedFileStoreTests {
+
+    private File directory;
+
+    private MappedFileStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("pac4j", "store");
+        Assert.assertTrue(directory.delete());
+        store = new MappedFileStore(directory, 1024, 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private File[] logFiles() {
+        return directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(".log");
+            }
+        });
+    }
+
+    @Test
+    public void open_whenDirectoryInUse_throwsException() {
+        try {
+            new MappedFileStore(directory, 1024, 0);
+            Assert.fail("the directory is locked by the open store");
+        } catch (final TechnicalException e) {
+            // expected
+        }
+        store.set("key", "value", 60);
+        store.close();
+        store = new MappedFileStore(directory, 1024, 0);
+        Assert.assertEquals("value", store.get("key"));
+    }
+
+    @Test
+    public void get_returnsSavedValues() {
+        store.set("bytes", new byte[] { 1, 2, 3 }, 60);
+        store.set("string", "value", 60);
+        store.set("object", Long.valueOf(12), 60);
+        Assert.assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) store.get("bytes")));
+        Assert.assertEquals("value", store.get("string"));
+        Assert.assertEquals(Long.valueOf(12), store.get("object"));
+        store.remove("string");
+        Assert.assertNull(store.get("string"));
+    }
+
+    @Test
+    public void get_whenReopened_returnsSavedValues() {
+        store.set("key1", "value1", 60);
+        store.set("key2", "value2", 60);
+        store.set("key1", "value1bis", 60);
+        store.remove("key2");
+        store.close();
+        store = new MappedFileStore(directory, 1024, 0);
+        Assert.assertEquals("value1bis", store.get("key1"));
+        Assert.assertNull(store.get("key2"));
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void get_whenExpired_returnsNull() throws InterruptedException {
+        store.set("key", "value", 1);
+        store.set("forever", "value", 0);
+        Thread.sleep(1100);
+        Assert.assertNull(store.get("key"));
+        Assert.assertEquals("value", store.get("forever"));
+        store.close();
+        store = new MappedFileStore(directory, 1024, 0);
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void set_whenFileFull_growsFile() {
+        for (int i = 0; i < 200; i++) {
+            store.set("key" + i, "value" + i, 60);
+        }
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals("value" + i, store.get("key" + i));
+        }
+        Assert.assertTrue(store.getLogSize() > 1024);
+    }
+
+    @Test
+    public void compact_keepsLiveEntriesOnly() {
+        for (int i = 0; i < 100; i++) {
+            store.set("key", "value" + i, 60);
+        }
+        store.set("other", "value", 60);
+        final int size = store.getLogSize();
+        store.compact();
+        Assert.assertTrue(store.getLogSize() < size);
+        Assert.assertEquals("value99", store.get("key"));
+        store.set("new", "value", 60);
+        store.close();
+        store = new MappedFileStore(directory, 1024, 0);
+        Assert.assertEquals("value99", store.get("key"));
+        Assert.assertEquals("value", store.get("other"));
+        Assert.assertEquals("value", store.get("new"));
+        Assert.assertEquals(1, logFiles().length);
+    }
+
+    @Test
+    public void compact_whenRenameFails_deletesTemporaryFile() throws IOException {
+        store.set("key", "value", 60);
+        final File blocker = new File(directory, "sessions-1.log");
+        Assert.assertTrue(blocker.mkdir());
+        final File child = new File(blocker, "child");
+        Assert.assertTrue(child.createNewFile());
+        try {
+            store.compact();
+            Assert.fail("compaction should fail");
+        } catch (final TechnicalException e) {
+            // expected
+        } finally {
+            child.delete();
+            blocker.delete();
+        }
+        Assert.assertFalse(new File(directory, "sessions-1.tmp").exists());
+        Assert.assertEquals("value", store.get("key"));
+        store.set("other", "value", 60);
+        Assert.assertEquals("value", store.get("other"));
+    }
+
+    @Test
+    public void open_whenLastRecordCorrupted_ignoresIt() throws IOException {
+        store.set("key1", "value1", 60);
+        store.set("key2", "value2", 60);
+        final int size = store.getLogSize();
+        store.close();
+        final RandomAccessFile file = new RandomAccessFile(logFiles()[0], "rw");
+        try {
+            // last byte of the last record
+            file.seek(size - 1);
+            file.write('X');
+        } finally {
+            file.close();
+        }
+        store = new MappedFileStore(directory, 1024, 0);
+        Assert.assertEquals("value1", store.get("key1"));
+        Assert.assertNull(store.get("key2"));
+        store.set("key3", "value3", 60);
+        Assert.assertEquals("value3", store.get("key3"));
+    }
+
+    @Test
+    public void touch_whenRemoved_doesNotRecreateEntry() {
+        store.set("key", "value", 60);
+        Assert.assertTrue(store.touch("key", 120));
+        Assert.assertEquals("value", store.get("key"));
+        store.remove("key");
+        Assert.assertFalse(store.touch("key", 120));
+        Assert.assertNull(store.get("key"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.play.Constants;
+import org.pac4j.play.StorageHelper;
+
+/**
+ * This class tests the {@link ShardedStore} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class ShardedStoreTests {
+
+    private static final int SESSIONS = 10000;
+
+    private static SessionStore[] newShards(final int n) {
+        final SessionStore[] shards = new SessionStore[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new InMemoryStore();
+        }
+        return shards;
+    }
+
+    @Test
+    public void getShard_routesSessionEntriesToSameShard() {
+        final ShardedStore store = new ShardedStore(newShards(4));
+        for (int i = 0; i < 100; i++) {
+            final String sessionId = StorageHelper.generateSessionId();
+            final SessionStore shard = store.getShard(sessionId);
+            Assert.assertSame(shard, store.getShard(sessionId + Constants.SEPARATOR + Constants.PROFILE));
+            Assert.assertSame(shard, store.getShard(sessionId + Constants.SEPARATOR + "CasClient$pac4jRequestedUrl"));
+        }
+    }
+
+    @Test
+    public void getShard_spreadsSessionsEvenly() {
+        final SessionStore[] shards = newShards(4);
+        final ShardedStore store = new ShardedStore(shards);
+        final Map<SessionStore, Integer> counts = new HashMap<SessionStore, Integer>();
+        for (int i = 0; i < SESSIONS; i++) {
+            final SessionStore shard = store.getShard(StorageHelper.generateSessionId());
+            final Integer count = counts.get(shard);
+            counts.put(shard, count == null ? 1 : count + 1);
+        }
+        for (final SessionStore shard : shards) {
+            final int count = counts.get(shard);
+            Assert.assertTrue("unbalanced: " + count, count > SESSIONS / 4 * 0.75 && count < SESSIONS / 4 * 1.25);
+        }
+    }
+
+    @Test
+    public void getShard_whenShardAdded_movesFewSessions() {
+        final SessionStore[] shards = newShards(5);
+        final ShardedStore four = new ShardedStore(Arrays.copyOf(shards, 4));
+        final ShardedStore five = new ShardedStore(shards);
+        int moved = 0;
+        for (int i = 0; i < SESSIONS; i++) {
+            final String sessionId = StorageHelper.generateSessionId();
+            if (four.getShard(sessionId) != five.getShard(sessionId)) {
+                moved++;
+            }
+        }
+        // about 1/5 of the sessions move to the new shard
+        Assert.assertTrue("moved: " + moved, moved < SESSIONS * 0.3);
+    }
+
+    @Test
+    public void get_whenShardFails_onlyItsSessionsAreLost() {
+        final SessionStore[] shards = newShards(3);
+        final FailingStore failing = new FailingStore();
+        shards[1] = failing;
+        final ShardedStore store = new ShardedStore(shards);
+        int lost = 0;
+        for (int i = 0; i < 300; i++) {
+            final String sessionId = StorageHelper.generateSessionId();
+            store.set(sessionId, "profile", 60);
+            final Object value = store.get(sessionId);
+            if (store.getShard(sessionId) == failing) {
+                Assert.assertNull(value);
+                lost++;
+            } else {
+                Assert.assertEquals("profile", value);
+            }
+        }
+        Assert.assertTrue(lost > 0 && lost < 300);
+    }
+
+    @Test
+    public void getAll_returnsValuesOfAllShards() {
+        final ShardedStore store = new ShardedStore(newShards(4));
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < 50; i++) {
+            values.put(StorageHelper.generateSessionId(), "profile" + i);
+        }
+        store.setAll(values, 60);
+        Assert.assertEquals(values, store.getAll(values.keySet()));
+        store.removeAll(values.keySet());
+        Assert.assertTrue(store.getAll(values.keySet()).isEmpty());
+    }
+
+    private static class FailingStore extends AbstractSessionStore {
+
+        public Object get(final String key) {
+            throw new IllegalStateException("node down");
+        }
+
+        public void set(final String key, final Object value, final int timeout) {
+            throw new IllegalStateException("node down");
+        }
+
+        public void remove(final String key) {
+            throw new IllegalStateException("node down");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+  Copyright 2012 - 2014 Jerome Leleu
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.pac4j.play.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.pac4j.play.Config;
+import org.pac4j.play.metrics.InMemoryMetricsRegistry;
+import org.pac4j.play.metrics.MetricsRegistry;
+
+/**
+ * This class tests the {@link StoreSnapshot} class.
+ *
+ * @author Jerome Leleu
+ * @since 1.3.1
+ */
+public class StoreSnapshotTests {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("pac4j", ".snapshot");
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        Config.setMetricsRegistry(null);
+    }
+
+    @Test
+    public void restore_returnsSavedEntries() {
+        final InMemoryStore store = new InMemoryStore();
+        store.set("profile", new byte[] { 1, 2, 3 }, 3600);
+        store.set("url", "/protected", 60);
+        store.set("forever", Long.valueOf(12), 0);
+        final StoreSnapshot snapshot = new StoreSnapshot(store, file);
+        Assert.assertEquals(3, snapshot.save());
+        Assert.assertTrue(snapshot.getLastSnapshotBytes() > 0);
+
+        final InMemoryStore newStore = new InMemoryStore();
+        final StoreSnapshot newSnapshot = new StoreSnapshot(newStore, file, 2);
+        Assert.assertEquals(3, newSnapshot.restore());
+        Assert.assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) newStore.get("profile")));
+        Assert.assertEquals("/protected", newStore.get("url"));
+        Assert.assertEquals(Long.valueOf(12), newStore.get("forever"));
+        Assert.assertEquals(3, newSnapshot.getLastRestoreEntries());
+    }
+
+    @Test
+    public void restore_whenExpiredSinceSnapshot_skipsEntries() throws InterruptedException {
+        final InMemoryStore store = new InMemoryStore();
+        store.set("short", "value", 1);
+        store.set("long", "value", 60);
+        new StoreSnapshot(store, file).save();
+        Thread.sleep(1100);
+        final InMemoryStore newStore = new InMemoryStore();
+        Assert.assertEquals(1, new StoreSnapshot(newStore, file).restore());
+        Assert.assertNull(newStore.get("short"));
+        Assert.assertEquals("value", newStore.get("long"));
+    }
+
+    @Test
+    public void restore_whenManyEntries_restoresAllInParallel() {
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        Config.setMetricsRegistry(metrics);
+        final InMemoryStore store = new InMemoryStore();
+        for (int i = 0; i < 5000; i++) {
+            store.set("key" + i, "value" + i, 60);
+        }
+        final StoreSnapshot snapshot = new StoreSnapshot(store, file);
+        snapshot.save();
+        final InMemoryStore newStore = new InMemoryStore();
+        Assert.assertEquals(5000, new StoreSnapshot(newStore, file, 4).restore());
+        Assert.assertEquals(5000, newStore.size());
+        Assert.assertEquals("value4999", newStore.get("key4999"));
+        Assert.assertEquals(1, metrics.getHistogram(MetricsRegistry.SNAPSHOT_SAVE).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(MetricsRegistry.SNAPSHOT_RESTORE).getCount());
+        Assert.assertEquals(snapshot.getLastSnapshotBytes(), metrics.getCount(MetricsRegistry.SNAPSHOT_SAVE_BYTES));
+        Assert.assertEquals(5000, metrics.getCount(MetricsRegistry.SNAPSHOT_SAVE_ENTRIES));
+        Assert.assertEquals(file.length(), metrics.getCount(MetricsRegistry.SNAPSHOT_RESTORE_BYTES));
+        Assert.assertEquals(5000, metrics.getCount(MetricsRegistry.SNAPSHOT_RESTORE_ENTRIES));
+    }
+
+    @Test
+    public void restore_whenNoFile_restoresNothing() {
+        Assert.assertEquals(0, new StoreSnapshot(new InMemoryStore(), file).restore());
+    }
+
+    @Test
+    public void save_whenSnapshotExists_replacesIt() {
+        final InMemoryStore store = new InMemoryStore();
+        store.set("key", "value1", 60);
+        final StoreSnapshot snapshot = new StoreSnapshot(store, file);
+        snapshot.save();
+        store.set("key", "value2", 60);
+        snapshot.save();
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+        final InMemoryStore newStore = new InMemoryStore();
+        Assert.assertEquals(1, new StoreSnapshot(newStore, file).restore());
+        Assert.assertEquals("value2", newStore.get("key"));
+    }
+}
@@ -15,6 +15,10 @@
  */
 package org.pac4j.play.scala
 
+import java.util.concurrent.RejectedExecutionException
+
+import scala.collection.JavaConverters._
+import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
 
 import play.api._
@@ -24,6 +28,7 @@ import org.pac4j.core.credentials._
 import org.pac4j.core.profile._
 import org.pac4j.core.util._
 import org.pac4j.play._
+import org.pac4j.play.metrics.MetricsRegistry
 import org.slf4j._
 import play.core.server.netty.RequestBodyHandler
 import org.pac4j.core.exception._
@@ -38,6 +43,16 @@ trait ScalaController extends Controller {
 
   protected val logger = LoggerFactory.getLogger("org.pac4j.play.scala.ScalaController")
 
+  /**
+   * The execution context composing the futures of the RequiresAuthentication actions (the Play default one), override it to use your
+   * own. The work itself does not run on it: the store is read on the storage execution context
+   * (Config.getStorageExecutionContext()) and the clients compute the redirections on the client execution context
+   * (Config.getClientExecutionContext()), both bounded.
+   *
+   * @return the execution context
+   */
+  protected def pac4jExecutionContext: ExecutionContext = play.api.libs.concurrent.Execution.defaultContext
+
   /**
    * Get or create a new sessionId.
    *
@@ -67,35 +82,95 @@ trait ScalaController extends Controller {
    */
   protected def RequiresAuthentication[A](clientName: String, targetUrl: String, parser: BodyParser[A], isAjax: Boolean)(action: CommonProfile => Action[A]) = Action.async(parser) { request =>
     logger.debug("Entering RequiresAuthentication")
+    // a new session has no profile yet: no storage access for anonymous users
+    val isNewSession = request.session.get(Constants.SESSION_ID).isEmpty
     var newSession = getOrCreateSessionId(request)
     val sessionId = newSession.get(Constants.SESSION_ID).get
     logger.debug("sessionId : {}", sessionId)
-    val profile = getUserProfile(request)
-    logger.debug("profile : {}", profile)
-
-    if (profile == null) {
-      try {
-        val redirectAction = getRedirectAction(request, newSession, clientName, targetUrl, true, isAjax)
-        logger.debug("redirectAction : {}", redirectAction)
-        redirectAction.getType() match {
-          case RedirectAction.RedirectType.REDIRECT => Future.successful(Redirect(redirectAction.getLocation()).withSession(newSession))
-          case RedirectAction.RedirectType.SUCCESS => Future.successful(Ok(redirectAction.getContent()).withSession(newSession).as(HTML))
-          case _ => throw new TechnicalException("Unexpected RedirectAction : " + redirectAction.getType)
+    val futureProfile: Option[Future[CommonProfile]] =
+      if (StatelessProfileHelper.isEnabled()) {
+        // profile in session cookie: no storage access
+        Some(Future.successful(getUserProfile(request)))
+      } else if (isNewSession) {
+        Some(Future.successful[CommonProfile](null))
+      } else {
+        // the request thread is not blocked by the store, the call is rejected if its execution context is saturated
+        try {
+          Some(StorageHelper.getProfileAsync(sessionId).wrapped())
+        } catch {
+          case ex: RejectedExecutionException => None
         }
-      } catch {
-        case ex: RequiresHttpAction => {
-          val code = ex.getCode()
-          if (code == 401) {
-            Future.successful(Unauthorized(Config.getErrorPage401()).as(HTML))
-          } else if (code == 403) {
-            Future.successful(Forbidden(Config.getErrorPage403()).as(HTML))
+      }
+
+    futureProfile match {
+      case None => {
+        logger.warn("storage call rejected for sessionId : {}", sessionId)
+        Config.getMetricsRegistry().increment(MetricsRegistry.STORAGE_REJECTED, 1)
+        Future.successful(ServiceUnavailable(Config.getErrorPage503()).as(HTML))
+      }
+      case Some(future) => future.flatMap { profile =>
+        logger.debug("profile : {}", profile)
+        if (profile == null) {
+          Config.getMetricsRegistry().increment(MetricsRegistry.REDIRECTED, 1)
+          // admission limits of the client
+          val limiter = Config.getClientLimiter(clientName)
+          if (limiter != null && !limiter.tryAcquire()) {
+            logger.debug("client call rejected by admission limits : {}", limiter)
+            Config.getMetricsRegistry().increment(MetricsRegistry.ADMISSION_REJECTED + clientName, 1)
+            Future.successful(ServiceUnavailable(Config.getErrorPage503()).withHeaders(RETRY_AFTER -> limiter.getRetryAfterSeconds().toString).as(HTML))
+          } else {
+            try {
+              // the client may call the provider and save session attributes
+              Future {
+                try {
+                  // the requested url may be saved in the session cookie
+                  val sessionValues = new java.util.HashMap[String, String]()
+                  val redirectAction = getRedirectAction(request, newSession, clientName, targetUrl, true, isAjax, sessionValues)
+                  logger.debug("redirectAction : {}", redirectAction)
+                  val redirectSession = sessionValues.asScala.foldLeft(newSession)(_ + _)
+                  redirectAction.getType() match {
+                    case RedirectAction.RedirectType.REDIRECT => Redirect(redirectAction.getLocation()).withSession(redirectSession)
+                    case RedirectAction.RedirectType.SUCCESS => Ok(redirectAction.getContent()).withSession(redirectSession).as(HTML)
+                    case _ => throw new TechnicalException("Unexpected RedirectAction : " + redirectAction.getType)
+                  }
+                } catch {
+                  case ex: RequiresHttpAction => {
+                    val code = ex.getCode()
+                    if (code == 401) {
+                      Unauthorized(Config.getErrorPage401()).as(HTML)
+                    } else if (code == 403) {
+                      Forbidden(Config.getErrorPage403()).as(HTML)
+                    } else {
+                      throw new TechnicalException("Unexpected HTTP code : " + code)
+                    }
+                  }
+                } finally {
+                  if (limiter != null) {
+                    limiter.release()
+                  }
+                }
+              }(Config.getClientExecutionContext())
+            } catch {
+              case ex: RejectedExecutionException => {
+                if (limiter != null) {
+                  limiter.release()
+                }
+                logger.warn("client call rejected : {}", ex.getMessage)
+                Future.successful(ServiceUnavailable(Config.getErrorPage503()).as(HTML))
+              }
+            }
+          }
+        } else {
+          Config.getMetricsRegistry().increment(MetricsRegistry.AUTHENTICATED, 1)
+          // sliding expiration
+          val refreshed = StorageHelper.refreshProfile(newSession.data.asJava, sessionId, profile)
+          if (refreshed.isEmpty) {
+            action(profile)(request)
           } else {
-            throw new TechnicalException("Unexpected HTTP code : " + code)
+            action(profile)(request).map(_.addingToSession(refreshed.asScala.toSeq: _*)(request))(pac4jExecutionContext)
           }
         }
-      }
-    } else {
-      action(profile)(request)
+      }(pac4jExecutionContext)
     }
   }
 
@@ -116,7 +191,7 @@ trait ScalaController extends Controller {
     var action: RedirectAction = null
     try {
       // redirect to the provider for authentication
-      action = getRedirectAction(request, newSession, clientName, targetUrl, false, false)
+      action = getRedirectAction(request, newSession, clientName, targetUrl, false, false, null)
     } catch {
       case ex: RequiresHttpAction => {
         // should not happen
@@ -135,26 +210,78 @@ trait ScalaController extends Controller {
    * @param targetUrl
    * @param protectedPage
    * @param isAjax
+   * @param sessionValues the values to add to the session (the requested url is saved to storage if null)
    * @return the redirection url to the provider
    */
-  private def getRedirectAction[A](request: Request[A], newSession: Session, clientName: String, targetUrl: String, protectedPage: Boolean, isAjax: Boolean): RedirectAction = {
-    val sessionId = newSession.get(Constants.SESSION_ID).get
-    logger.debug("sessionId for getRedirectionUrl() : {}", sessionId)
-    // save requested url to save
-    val requestedUrlToSave = CallbackController.defaultUrl(targetUrl, request.uri)
-    logger.debug("requestedUrlToSave : {}", requestedUrlToSave)
-    StorageHelper.saveRequestedUrl(sessionId, clientName, requestedUrlToSave);
-    // context
-    val scalaWebContext = new ScalaWebContext(request, newSession)
-    // clients
-    val clients = Config.getClients()
-    if (clients == null) {
-      throw new TechnicalException("No client defined. Use Config.setClients(clients)")
+  private def getRedirectAction[A](request: Request[A], newSession: Session, clientName: String, targetUrl: String, protectedPage: Boolean, isAjax: Boolean, sessionValues: java.util.Map[String, String]): RedirectAction = {
+    // session attributes read once and saved together
+    val scope = StorageScope.open()
+    try {
+      val sessionId = newSession.get(Constants.SESSION_ID).get
+      logger.debug("sessionId for getRedirectionUrl() : {}", sessionId)
+      // save requested url to save
+      val requestedUrlToSave = CallbackController.defaultUrl(targetUrl, request.uri)
+      logger.debug("requestedUrlToSave : {}", requestedUrlToSave)
+      if (sessionValues == null) {
+        StorageHelper.saveRequestedUrl(sessionId, clientName, requestedUrlToSave)
+      } else {
+        StorageHelper.saveRequestedUrl(sessionValues, sessionId, clientName, requestedUrlToSave)
+      }
+      // context
+      val scalaWebContext = new ScalaWebContext(request, newSession)
+      // clients indexed by name
+      val registry = Config.getClientRegistry()
+      if (registry == null) {
+        throw new TechnicalException("No client defined. Use Config.setClients(clients)")
+      }
+      val client = registry.findClient(clientName) match { case c: BaseClient[_, _] => c }
+      val action = client.getRedirectAction(scalaWebContext, protectedPage, isAjax)
+      logger.debug("redirectAction to : {}", action)
+      action
+    } finally {
+      scope.close()
+    }
+  }
+
+  /**
+   * Returns the redirection action to the provider for authentication, without blocking the current thread: the requested url is saved
+   * and the redirection computed on the given execution context.
+   *
+   * @param request
+   * @param newSession
+   * @param clientName
+   * @param targetUrl
+   * @param ec
+   * @return the future redirection url to the provider
+   */
+  protected def getRedirectActionAsync[A](request: Request[A], newSession: Session, clientName: String, targetUrl: String = "")(implicit ec: ExecutionContext): Future[RedirectAction] = {
+    Future(getRedirectAction(request, newSession, clientName, targetUrl))(ec)
+  }
+
+  /**
+   * Returns the user profile without blocking the current thread: the store is read on the storage execution context
+   * (Config.getStorageExecutionContext()), or directly by a store implementing AsyncSessionStore. The returned future fails with a
+   * RejectedExecutionException when the storage execution context is saturated.
+   *
+   * @param request
+   * @return the future user profile
+   */
+  protected def getUserProfileAsync(request: RequestHeader): Future[CommonProfile] = {
+    // profile in session cookie: no storage access
+    if (StatelessProfileHelper.isEnabled()) {
+      return Future.successful(getUserProfile(request))
+    }
+    val sessionId = request.session.get(Constants.SESSION_ID)
+    logger.debug("sessionId for profile : {}", sessionId)
+    if (sessionId.isDefined) {
+      try {
+        StorageHelper.getProfileAsync(sessionId.get).wrapped()
+      } catch {
+        case ex: RejectedExecutionException => Future.failed(ex)
+      }
+    } else {
+      Future.successful(null)
     }
-    val client = clients.findClient(clientName) match { case c: BaseClient[_, _] => c }
-    val action = client.getRedirectAction(scalaWebContext, protectedPage, isAjax)
-    logger.debug("redirectAction to : {}", action)
-    action
   }
 
   /**
@@ -164,6 +291,12 @@ trait ScalaController extends Controller {
    * @return the user profile
    */
   protected def getUserProfile(request: RequestHeader): CommonProfile = {
+    // profile in session cookie
+    if (StatelessProfileHelper.isEnabled()) {
+      val profile = StatelessProfileHelper.deserialize(request.session.get(Constants.PROFILE).orNull)
+      logger.debug("profile : {}", profile)
+      return profile
+    }
     // get the session id
     var profile: CommonProfile = null
     val sessionId = request.session.get(Constants.SESSION_ID)